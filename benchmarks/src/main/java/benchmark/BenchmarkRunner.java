@@ -0,0 +1,31 @@
+/*
+ * Description: This class contains the main method of the benchmark jar.
+ */
+
+package benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The {@code BenchmarkRunner} class runs the JMH benchmarks with the GC
+ * profiler always enabled, so allocation rates are reported next to the
+ * timings. Any standard JMH command line options (e.g. a benchmark regex,
+ * {@code -f}, {@code -wi}, {@code -i}) are passed through.
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args)
+            throws RunnerException, CommandLineOptionException {
+        Options options = new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
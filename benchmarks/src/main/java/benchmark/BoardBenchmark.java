@@ -0,0 +1,60 @@
+/*
+ * Description: This class benchmarks the basic operations of the board.
+ */
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.infra.Blackhole;
+
+import model.Board;
+
+/**
+ * The {@code BoardBenchmark} class measures {@link Board#get(int)},
+ * {@link Board#set(int, int)}, {@link Board#copy()} and
+ * {@link Board#find(int)} over every position of the corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BoardBenchmark {
+
+    @Benchmark
+    public int get(PositionState state) {
+        int sum = 0;
+        for (Board board : state.boards) {
+            for (int i = 0; i < 32; i++) {
+                sum += board.get(i);
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public void set(PositionState state) {
+        for (Board board : state.boards) {
+            for (int i = 0; i < 32; i++) {
+                board.set(i, board.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void copy(PositionState state, Blackhole bh) {
+        for (Board board : state.boards) {
+            bh.consume(board.copy());
+        }
+    }
+
+    @Benchmark
+    public void find(PositionState state, Blackhole bh) {
+        for (Board board : state.boards) {
+            bh.consume(board.find(Board.BLACK_CHECKER));
+            bh.consume(board.find(Board.WHITE_KING));
+        }
+    }
+}
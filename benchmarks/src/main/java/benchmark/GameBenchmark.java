@@ -0,0 +1,54 @@
+/*
+ * Description: This class benchmarks the game level operations and the
+ * greedy computer player.
+ */
+
+package benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import ai.ComputerPlayer;
+import model.Game;
+
+/**
+ * The {@code GameBenchmark} class measures {@link Game#isGameOver()} and
+ * {@link ComputerPlayer#updateGame(Game)}. The computer player changes the
+ * game, so it plays on a copy of each position and the copy is part of the
+ * measured time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class GameBenchmark {
+
+    private final ComputerPlayer player = new ComputerPlayer();
+
+    @Benchmark
+    public int isGameOver(PositionState state) {
+        int over = 0;
+        for (Game game : state.games) {
+            if (game.isGameOver()) {
+                over++;
+            }
+        }
+        return over;
+    }
+
+    @Benchmark
+    public int computerPlayerUpdateGame(PositionState state) {
+        int turns = 0;
+        for (Game game : state.games) {
+            Game copy = game.copy();
+            player.updateGame(copy);
+            turns += copy.isP1Turn() ? 1 : 0;
+        }
+        return turns;
+    }
+}
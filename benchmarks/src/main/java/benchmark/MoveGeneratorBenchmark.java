@@ -0,0 +1,59 @@
+/*
+ * Description: This class benchmarks move generation.
+ */
+
+package benchmark;
+
+import java.awt.Point;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import ai.MoveGenerator;
+
+/**
+ * The {@code MoveGeneratorBenchmark} class measures the point list methods
+ * {@link MoveGenerator#getMoves(model.Board, Point)} and
+ * {@link MoveGenerator#getSkips(model.Board, Point)} for every checker of the
+ * player to move, and the packed generation of all moves for a position.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MoveGeneratorBenchmark {
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+
+    @Benchmark
+    public void getMoves(PositionState state, Blackhole bh) {
+        for (int i = 0; i < state.boards.length; i++) {
+            for (Point checker : state.checkers[i]) {
+                bh.consume(MoveGenerator.getMoves(state.boards[i], checker));
+            }
+        }
+    }
+
+    @Benchmark
+    public void getSkips(PositionState state, Blackhole bh) {
+        for (int i = 0; i < state.boards.length; i++) {
+            for (Point checker : state.checkers[i]) {
+                bh.consume(MoveGenerator.getSkips(state.boards[i], checker));
+            }
+        }
+    }
+
+    @Benchmark
+    public int getMovesPacked(PositionState state) {
+        int count = 0;
+        for (int i = 0; i < state.games.length; i++) {
+            count += MoveGenerator.getMoves(state.games[i], moves);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Description: This class benchmarks move validation.
+ */
+
+package benchmark;
+
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import ai.MoveGenerator;
+import ai.MoveLogic;
+
+/**
+ * The {@code MoveLogicBenchmark} class measures
+ * {@link MoveLogic#isValidMove(model.Game, int, int)} for every legal move of
+ * each position and {@link MoveLogic#isSafe(model.Board, Point)} for every
+ * checker of the player to move.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class MoveLogicBenchmark {
+
+    /**
+     * The legal packed moves of each position.
+     */
+    private int[][] legalMoves;
+
+    @Setup
+    public void setup(PositionState state) {
+        this.legalMoves = new int[state.games.length][];
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        for (int i = 0; i < state.games.length; i++) {
+            int n = MoveGenerator.getMoves(state.games[i], moves);
+            legalMoves[i] = Arrays.copyOf(moves, n);
+        }
+    }
+
+    @Benchmark
+    public int isValidMove(PositionState state) {
+        int valid = 0;
+        for (int i = 0; i < state.games.length; i++) {
+            for (int move : legalMoves[i]) {
+                if (MoveLogic.isValidMove(state.games[i],
+                        MoveGenerator.getStartIndex(move),
+                        MoveGenerator.getEndIndex(move))) {
+                    valid++;
+                }
+            }
+        }
+        return valid;
+    }
+
+    @Benchmark
+    public int isSafe(PositionState state) {
+        int safe = 0;
+        for (int i = 0; i < state.boards.length; i++) {
+            for (Point checker : state.checkers[i]) {
+                if (MoveLogic.isSafe(state.boards[i], checker)) {
+                    safe++;
+                }
+            }
+        }
+        return safe;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Description: This class holds the corpus of positions that the benchmarks
+ * run over.
+ */
+
+package benchmark;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import model.Board;
+import model.Game;
+
+/**
+ * The {@code PositionState} class is the JMH state shared by the benchmarks.
+ * It loads a corpus of realistic positions, taken from games between the
+ * alpha-beta engine and a partly random opponent, so the benchmarks measure
+ * the engine on boards like the ones it actually searches. Each benchmark
+ * operation processes every position of the selected phase once.
+ */
+@State(Scope.Thread)
+public class PositionState {
+
+    /**
+     * Mid-game positions (14 or more checkers), in the format of
+     * {@link Game#getGameState()}.
+     */
+    private static final String[] MIDGAME = {
+            "006606660666460000440044000444401-1",
+            "066600604606066000004040400440441-1",
+            "006666646604600044044400400004441-1",
+            "000066666666606044044440444000041-1",
+            "606660060006600046444004000440401-1",
+            "006666660006000046400000000444700-1",
+            "006664064006000600000440000404441-1",
+            "000066666006600060404044400400400-1"
+    };
+
+    /**
+     * Endgame positions (5 to 7 checkers, mostly kings), in the format of
+     * {@link Game#getGameState()}.
+     */
+    private static final String[] ENDGAME = {
+            "000650000040400000000404000400001-1",
+            "500000060006060000000040070040001-1",
+            "000000000000000050004460700000070-1",
+            "050000000006500000004000460000701-1",
+            "505000600004000000400000000077001-1",
+            "500070000000000000000000770007770-1",
+            "000000000000000000000000007775071-1",
+            "000050040000060006000000400400041-1"
+    };
+
+    /**
+     * The phase of the game the positions are taken from.
+     */
+    @Param({"midgame", "endgame"})
+    public String phase;
+
+    /**
+     * The positions as games.
+     */
+    public Game[] games;
+
+    /**
+     * The boards of the positions.
+     */
+    public Board[] boards;
+
+    /**
+     * The checkers of the player to move in each position.
+     */
+    public Point[][] checkers;
+
+    @Setup
+    public void setup() {
+        String[] states = phase.equals("endgame") ? ENDGAME : MIDGAME;
+        this.games = new Game[states.length];
+        this.boards = new Board[states.length];
+        this.checkers = new Point[states.length][];
+        for (int i = 0; i < states.length; i++) {
+            games[i] = new Game();
+            games[i].setGameState(states[i]);
+            boards[i] = games[i].getBoard();
+            boolean black = games[i].isP1Turn();
+            List<Point> points = new ArrayList<>();
+            points.addAll(boards[i].find(black ? Board.BLACK_CHECKER : Board.WHITE_CHECKER));
+            points.addAll(boards[i].find(black ? Board.BLACK_KING : Board.WHITE_KING));
+            checkers[i] = points.toArray(new Point[0]);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/* Description: This class represents a computer player which searches several
+ * turns ahead with alpha-beta pruning before making a move.
+ */
+
+package ai;
+
+import model.Game;
+import model.Player;
+
+/**
+ * The {@code AlphaBetaPlayer} class represents a computer player that uses a
+ * {@link Search} to look a number of turns ahead. A larger depth makes the
+ * player stronger at the cost of more time per move.
+ * <p>
+ * The search can also be limited by time, either with a fixed time per move
+ * or with a {@link TimeControl} game clock. The search then deepens until the
+ * time runs out, up to the maximum depth.
+ * <p>
+ * With an {@link OpeningBook}, the first moves of a game are played from the
+ * book without searching.
+ */
+public class AlphaBetaPlayer implements Player {
+	
+	/** The depth used if none is specified. */
+	public static final int DEFAULT_DEPTH = 6;
+	
+	/** The search used to find moves. */
+	private final Search search;
+	
+	/** The number of turns to look ahead (the maximum if timed). */
+	private int depth;
+	
+	/** The time allowed per move in milliseconds, or 0 for no limit. */
+	private long moveTime;
+	
+	/** The game clock, or null if the time per move is fixed. */
+	private TimeControl clock;
+	
+	/** The opening book, or null if every move is searched. */
+	private OpeningBook book;
+	
+	public AlphaBetaPlayer() {
+		this(DEFAULT_DEPTH);
+	}
+	
+	public AlphaBetaPlayer(int depth) {
+		this(depth, 0);
+	}
+	
+	public AlphaBetaPlayer(int maxDepth, long moveTime) {
+		this(maxDepth, moveTime, TranspositionTable.DEFAULT_SIZE);
+	}
+	
+	public AlphaBetaPlayer(int maxDepth, long moveTime, int hashSize) {
+		this.search = new Search(hashSize);
+		setDepth(maxDepth);
+		setMoveTime(moveTime);
+	}
+	
+	@Override
+	public boolean isHuman() {
+		return false;
+	}
+	
+	@Override
+	public void updateGame(Game game) {
+		
+		// Nothing to do
+		if (game == null || game.isGameOver()) {
+			return;
+		}
+		
+		// Play from the book while the game is in it, otherwise search for
+		// the best move, and make it
+		long timeLimit = (clock != null) ? clock.getMoveTime() : moveTime;
+		long start = System.currentTimeMillis();
+		boolean isP1Turn = game.isP1Turn();
+		long turn = (book != null) ? book.getMove(game) : Search.NO_MOVE;
+		if (turn == Search.NO_MOVE) {
+			turn = search.search(game, depth, timeLimit);
+		}
+		if (turn != Search.NO_MOVE) {
+			game.makeTurn(turn);
+		}
+		
+		// Charge the time to the clock
+		if (clock != null) {
+			clock.update(System.currentTimeMillis() - start,
+					isP1Turn != game.isP1Turn());
+		}
+	}
+	
+	/**
+	 * Gets the search used by this player, which holds the results of the
+	 * last move (e.g. the depth reached).
+	 * 
+	 * @return the search.
+	 */
+	public Search getSearch() {
+		return search;
+	}
+	
+	public int getDepth() {
+		return depth;
+	}
+	
+	public void setDepth(int depth) {
+		this.depth = Math.max(1, depth);
+	}
+	
+	public long getMoveTime() {
+		return moveTime;
+	}
+	
+	public void setMoveTime(long moveTime) {
+		this.moveTime = Math.max(0, moveTime);
+	}
+	
+	public int getThreads() {
+		return search.getThreads();
+	}
+	
+	public void setThreads(int threads) {
+		search.setThreads(threads);
+	}
+	
+	/**
+	 * Stops the helper threads of the search (see {@link Search#shutdown()}).
+	 */
+	@Override
+	public void shutdown() {
+		search.shutdown();
+	}
+	
+	public TimeControl getClock() {
+		return clock;
+	}
+	
+	public void setClock(TimeControl clock) {
+		this.clock = clock;
+	}
+	
+	public OpeningBook getBook() {
+		return book;
+	}
+	
+	/**
+	 * Sets the opening book to play from. A move in the book is played
+	 * without searching, until the game leaves the book.
+	 * 
+	 * @param book	the book, or null to search every move.
+	 */
+	public void setBook(OpeningBook book) {
+		this.book = book;
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[depth=" + depth + ", moveTime="
+				+ moveTime + ", threads=" + getThreads() + ", clock=" + clock
+				+ "]";
+	}
+}
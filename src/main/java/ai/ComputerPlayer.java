@@ -6,7 +6,6 @@
 
 package ai;
 
-import java.awt.Point;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -49,8 +48,21 @@ public class ComputerPlayer implements Player {
 	/** The factor used to multiply some weights when the checker being
 	 * observed is a king. */
 	private static final double KING_FACTOR = 2;
+	
+	/** The weight of owning a checker, used when evaluating a whole board. */
+	static final double CHECKER = 50;
+	
+	/** The weight of each row a checker (not a king) has advanced towards
+	 * being crowned, used when evaluating a whole board. */
+	private static final double ADVANCE = 1;
 	/* ------------ */
-
+	
+	/** The buffer used to generate chains of skips. */
+	private final long[] turns = new long[MoveGenerator.MAX_TURNS];
+	
+	/** The opening book, or null if every move is weighed. */
+	private OpeningBook book;
+	
 	@Override
 	public boolean isHuman() {
 		return false;
@@ -63,6 +75,13 @@ public class ComputerPlayer implements Player {
 		if (game == null || game.isGameOver()) {
 			return;
 		}
+		
+		// Play from the book while the game is in it
+		long turn = (book != null) ? book.getMove(game) : Search.NO_MOVE;
+		if (turn != Search.NO_MOVE) {
+			game.makeTurn(turn);
+			return;
+		}
 			
 		// Get the available moves
 		Game copy = game.copy();
@@ -73,7 +92,7 @@ public class ComputerPlayer implements Player {
 		double bestWeight = Move.WEIGHT_INVALID;
 		for (int i = 0; i < n; i ++) {
 			Move m = moves.get(i);
-			getMoveWeight(copy.copy(), m);
+			getMoveWeight(copy, m);
 			if (m.getWeight() > bestWeight) {
 				count = 1;
 				bestWeight = m.getWeight();
@@ -96,6 +115,20 @@ public class ComputerPlayer implements Player {
 		}
 	}
 	
+	public OpeningBook getBook() {
+		return book;
+	}
+	
+	/**
+	 * Sets the opening book to play from. A move in the book is played
+	 * without weighing the moves, until the game leaves the book.
+	 * 
+	 * @param book	the book, or null to weigh every move.
+	 */
+	public void setBook(OpeningBook book) {
+		this.book = book;
+	}
+	
 	/**
 	 * Gets all the available moves and skips for the current player.
 	 * 
@@ -104,51 +137,19 @@ public class ComputerPlayer implements Player {
 	 */
 	private List<Move> getMoves(Game game) {
 		
-		// The next move needs to be a skip
-		if (game.getSkipIndex() >= 0) {
-			
-			List<Move> moves = new ArrayList<>();
-			List<Point> skips = MoveGenerator.getSkips(game.getBoard(),
-					game.getSkipIndex());
-			for (Point end : skips) {
-				moves.add(new Move(game.getSkipIndex(), Board.toTileIndex(end)));
-			}
+		// Get the packed moves (only skips if any are available)
+		int[] packed = new int[MoveGenerator.MAX_MOVES];
+		int n = MoveGenerator.getMoves(game, packed);
+		List<Move> moves = new ArrayList<>(n);
+		for (int i = 0; i < n; i ++) {
+			Move m = new Move(MoveGenerator.getStartIndex(packed[i]),
+					MoveGenerator.getEndIndex(packed[i]));
 			
-			return moves;
-		}
-		
-		// Get the checkers
-		List<Point> checkers = new ArrayList<>();
-		Board b = game.getBoard();
-		if (game.isP1Turn()) {
-			checkers.addAll(b.find(Board.BLACK_CHECKER));
-			checkers.addAll(b.find(Board.BLACK_KING));
-		} else {
-			checkers.addAll(b.find(Board.WHITE_CHECKER));
-			checkers.addAll(b.find(Board.WHITE_KING));
-		}
-		
-		// Determine if there are any skips
-		List<Move> moves = new ArrayList<>();
-		for (Point checker : checkers) {
-			int index = Board.toTileIndex(checker);
-			List<Point> skips = MoveGenerator.getSkips(b, index);
-			for (Point end : skips) {
-				Move m = new Move(index, Board.toTileIndex(end));
+			// A skip that starts the turn gets the skip weight
+			if (MoveGenerator.isSkip(packed[i]) && game.getSkipIndex() < 0) {
 				m.changeWeight(WEIGHT_SKIP);
-				moves.add(m);
-			}
-		}
-		
-		// If there are no skips, add the regular moves
-		if (moves.isEmpty()) {
-			for (Point checker : checkers) {
-				int index = Board.toTileIndex(checker);
-				List<Point> movesEnds = MoveGenerator.getMoves(b, index);
-				for (Point end : movesEnds) {
-					moves.add(new Move(index, Board.toTileIndex(end)));
-				}
 			}
+			moves.add(m);
 		}
 		
 		return moves;
@@ -170,46 +171,41 @@ public class ComputerPlayer implements Player {
 			return 0;
 		}
 		
-		// Recursively get the depth
-		List<Point> skips = MoveGenerator.getSkips(game.getBoard(), startIndex);
+		// Find the chain that captures the most checkers
+		int n = MoveGenerator.getChains(game.getBoardReference(), startIndex,
+				turns, 0);
 		int depth = 0;
-		for (Point end : skips) {
-			int endIndex = Board.toTileIndex(end);
-			game.makeMove(startIndex, endIndex);
-			int testDepth = getSkipDepth(game, endIndex, isP1Turn);
+		for (int i = 0; i < n; i ++) {
+			int testDepth = Integer.bitCount(MoveGenerator.getCaptured(turns[i]));
 			if (testDepth > depth) {
 				depth = testDepth;
 			}
 		}
 		
-		return depth + (skips.isEmpty()? 0 : 1);
+		return depth;
 	}
 	
 	/**
 	 * Determines the weight of a move based on a number of factors (e.g. how
 	 * safe the checker is before/after, whether it can take an opponents
-	 * checker after, etc).
+	 * checker after, etc). The move is made and then taken back, so the game
+	 * is left unchanged.
 	 * 
 	 * @param game	the current game state.
 	 * @param m		the move to test.
 	 */
 	private void getMoveWeight(Game game, Move m) {
 		
-		Point start = m.getStart(), end = m.getEnd();
-		int startIndex = Board.toTileIndex(start), endIndex = Board.toTileIndex(end);
-		Board b = game.getBoard();
+		int startIndex = m.getStartIndex(), endIndex = m.getEndIndex();
+		Board b = game.getBoardReference();
 		boolean changed = game.isP1Turn();
-		boolean safeBefore = MoveLogic.isSafe(b, start);
+		boolean safeBefore = MoveLogic.isSafe(b, startIndex);
 
 		// Set the initial weight
 		m.changeWeight(getSafetyWeight(b, game.isP1Turn()));
 		
-		// Make the move
-		if (!game.makeMove(m.getStartIndex(), m.getEndIndex())) {
-			m.setWeight(Move.WEIGHT_INVALID);
-			return;
-		}
-		b = game.getBoard();
+		// Make the move (it came from the move generator)
+		game.applyMove(startIndex, endIndex);
 		changed = (changed != game.isP1Turn());
 		int id = b.get(endIndex);
 		boolean isKing = (id == Board.BLACK_KING || id == Board.WHITE_KING);
@@ -217,7 +213,7 @@ public class ComputerPlayer implements Player {
 		
 		// Determine if a skip could be made on next move
 		if (changed) {
-			safeAfter = MoveLogic.isSafe(b, end);
+			safeAfter = MoveLogic.isSafe(b, endIndex);
 			int depth = getSkipDepth(game, endIndex, !game.isP1Turn());
 			if (safeAfter) {
 				m.changeWeight(SKIP_ON_NEXT * depth * depth);
@@ -244,42 +240,80 @@ public class ComputerPlayer implements Player {
 		}
 		m.changeWeight(getSafetyWeight(b,
 				changed? !game.isP1Turn() : game.isP1Turn()));
+		
+		// Take the move back
+		game.unmakeMove();
+	}
+	
+	/**
+	 * Evaluates a board from the point of view of one player by comparing
+	 * the material (kings count {@link #KING_FACTOR} times as much as a
+	 * checker, and checkers gain {@link #ADVANCE} for each row they have
+	 * advanced) and the safety weights of both players.
+	 * 
+	 * @param b			the board state to evaluate.
+	 * @param isBlack	the flag indicating if the score is for black.
+	 * @return the score of the board, where a positive score is good for the
+	 * player specified.
+	 * @see {@link Evaluation}
+	 */
+	public static int evaluate(Board b, boolean isBlack) {
+		int weight = getSafetyWeight(b, true) - getSafetyWeight(b, false);
+		int black = b.getBlackMask();
+		for (int tiles = b.getOccupiedMask(); tiles != 0; tiles &= tiles - 1) {
+			int index = Integer.numberOfTrailingZeros(tiles);
+			int w = getMaterialWeight(b, index);
+			weight += ((black & (1 << index)) != 0) ? w : -w;
+		}
+		
+		return isBlack ? weight : -weight;
+	}
+	
+	/**
+	 * Calculates the weight of owning the checker on a tile, for the player
+	 * that owns it.
+	 * 
+	 * @param b		the board state to check against.
+	 * @param index	the index of the tile.
+	 * @return the material weight of the checker, or 0 if the tile is empty.
+	 */
+	static int getMaterialWeight(Board b, int index) {
+		
+		// Nothing here
+		int bit = 1 << index;
+		if ((b.getOccupiedMask() & bit) == 0) {
+			return 0;
+		}
+		
+		// Kings are worth more, other checkers more as they advance
+		if ((b.getKingMask() & bit) != 0) {
+			return (int) (CHECKER * KING_FACTOR);
+		}
+		int rows = ((b.getBlackMask() & bit) != 0)
+				? Board.getY(index) : 7 - Board.getY(index);
+		
+		return (int) (CHECKER + ADVANCE * rows);
 	}
 	
 	/**
 	 * Calculates the 'safety' state of the game for the player specified. The
 	 * player has 'safe' and 'unsafe' checkers, which respectively, cannot and
-	 * can be skipped by the opponent in the next turn.
+	 * can be skipped by the opponent in the next turn. The unsafe checkers
+	 * come from {@link MoveGenerator#getThreatened(Board, boolean)}, so the
+	 * weight is found in constant time.
 	 * 
 	 * @param b			the board state to check against.
 	 * @param isBlack	the flag indicating if black checkers should be observed.
 	 * @return the weight corresponding to how safe the player's checkers are.
 	 */
-	private double getSafetyWeight(Board b, boolean isBlack) {
-		
-		// Get the checkers
-		double weight = 0;
-		List<Point> checkers = new ArrayList<>();
-		if (isBlack) {
-			checkers.addAll(b.find(Board.BLACK_CHECKER));
-			checkers.addAll(b.find(Board.BLACK_KING));
-		} else {
-			checkers.addAll(b.find(Board.WHITE_CHECKER));
-			checkers.addAll(b.find(Board.WHITE_KING));
-		}
-		
-		// Determine conditions for each checker
-		for (Point checker : checkers) {
-			int index = Board.toTileIndex(checker);
-			int id = b.get(index);
-			boolean isKing = (id == Board.BLACK_KING || id == Board.WHITE_KING);
-			if (MoveLogic.isSafe(b, checker)) {
-				weight += SAFE;
-			} else {
-				weight += UNSAFE * (isKing? KING_FACTOR : 1);
-			}
-		}
+	static int getSafetyWeight(Board b, boolean isBlack) {
+		int checkers = isBlack ? b.getBlackMask() : b.getWhiteMask();
+		int unsafe = MoveGenerator.getThreatened(b, isBlack);
+		int kings = b.getKingMask();
+		double weight = SAFE * Integer.bitCount(checkers & ~unsafe)
+				+ UNSAFE * Integer.bitCount(unsafe & ~kings)
+				+ UNSAFE * KING_FACTOR * Integer.bitCount(unsafe & kings);
 		
-		return weight;
+		return (int) weight;
 	}
 }
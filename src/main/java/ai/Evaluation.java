@@ -0,0 +1,147 @@
+/* Description: This class keeps the evaluation of a board up to date as moves
+ * are made and taken back, so a search does not score every board from
+ * scratch.
+ */
+
+package ai;
+
+import java.util.Arrays;
+
+import model.Board;
+
+/**
+ * The {@code Evaluation} class keeps the material terms of
+ * {@link ComputerPlayer#evaluate(Board, boolean)} (including king counts and
+ * advancement) for each tile of a board, along with their running total.
+ * After a move only the tiles that changed (the start, end and captured
+ * tiles) are scored again, so the cost of an update is proportional to the
+ * move rather than the board. The old terms are pushed onto a stack, so
+ * {@link #unmakeMove()} restores them without scoring anything.
+ * <p>
+ * The safety terms do not need to be kept, as they are found for the whole
+ * board at once from {@link MoveGenerator#getThreatened(Board, boolean)}.
+ * <p>
+ * The board must be changed first, then {@link #makeMove(Board, int)} called
+ * with the tiles that changed. Moves are taken back in the reverse order,
+ * with {@link #unmakeMove()} called after the board is restored.
+ */
+public class Evaluation {
+	
+	/** The number of values pushed for each move, besides the tile terms. */
+	private static final int HEADER_SIZE = 2;
+	
+	/** The material weight of each tile (positive for black). */
+	private final int[] material = new int[32];
+	
+	/** The material of black minus the material of white. */
+	private int materialTotal;
+	
+	/** The board being evaluated. */
+	private Board board;
+	
+	/** The terms replaced by each move, to allow them to be restored. */
+	private int[] stack = new int[256];
+	
+	/** The number of values on the stack. */
+	private int top;
+	
+	public Evaluation() {}
+	
+	public Evaluation(Board board) {
+		reset(board);
+	}
+	
+	/**
+	 * Scores every tile of a board from scratch and clears the moves
+	 * remembered.
+	 * 
+	 * @param board	the board to evaluate.
+	 */
+	public void reset(Board board) {
+		Arrays.fill(material, 0);
+		this.materialTotal = 0;
+		this.top = 0;
+		update(board, 0xFFFFFFFF);
+	}
+	
+	/**
+	 * Updates the terms after a move was made on the board.
+	 * 
+	 * @param board		the board after the move.
+	 * @param changed	the bitboard of tiles the move changed (the start and
+	 * end tile and any captured checkers).
+	 * @see {@link #unmakeMove()}
+	 */
+	public void makeMove(Board board, int changed) {
+		
+		// Remember the terms that will be replaced
+		if (top + 32 + HEADER_SIZE > stack.length) {
+			this.stack = Arrays.copyOf(stack, stack.length * 2);
+		}
+		for (int tiles = changed; tiles != 0; tiles &= tiles - 1) {
+			stack[top ++] = material[Integer.numberOfTrailingZeros(tiles)];
+		}
+		stack[top ++] = materialTotal;
+		stack[top ++] = changed;
+		
+		update(board, changed);
+	}
+	
+	/**
+	 * Restores the terms from before the last call to
+	 * {@link #makeMove(Board, int)}.
+	 * 
+	 * @return true if a move was taken back, false if there were no moves to
+	 * take back.
+	 */
+	public boolean unmakeMove() {
+		
+		// Nothing to take back
+		if (top == 0) {
+			return false;
+		}
+		
+		// Restore the total and the terms of each tile
+		int changed = stack[-- top];
+		this.materialTotal = stack[-- top];
+		top -= Integer.bitCount(changed);
+		int i = top;
+		for (int tiles = changed; tiles != 0; tiles &= tiles - 1) {
+			material[Integer.numberOfTrailingZeros(tiles)] = stack[i ++];
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Scores some tiles again and updates the total.
+	 * 
+	 * @param board	the current board.
+	 * @param tiles	the bitboard of tiles to score.
+	 */
+	private void update(Board board, int tiles) {
+		this.board = board;
+		int black = board.getBlackMask();
+		for (; tiles != 0; tiles &= tiles - 1) {
+			int index = Integer.numberOfTrailingZeros(tiles);
+			int weight = ComputerPlayer.getMaterialWeight(board, index);
+			materialTotal -= material[index];
+			material[index] = ((black & (1 << index)) != 0) ? weight : -weight;
+			materialTotal += material[index];
+		}
+	}
+	
+	/**
+	 * Gets the score of the board from the point of view of one player, which
+	 * is the same as {@link ComputerPlayer#evaluate(Board, boolean)}.
+	 * 
+	 * @param isBlack	the flag indicating if the score is for black.
+	 * @return the score of the board, where a positive score is good for the
+	 * player specified.
+	 */
+	public int evaluate(boolean isBlack) {
+		int weight = materialTotal + ComputerPlayer.getSafetyWeight(board, true)
+				- ComputerPlayer.getSafetyWeight(board, false);
+		return isBlack ? weight : -weight;
+	}
+}
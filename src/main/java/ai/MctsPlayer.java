@@ -0,0 +1,437 @@
+/* Description: This class represents a computer player which chooses moves
+ * by playing many random games and keeping the statistics in a tree.
+ */
+
+package ai;
+
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import model.Board;
+import model.Game;
+import model.Player;
+
+/**
+ * The {@code MctsPlayer} class represents a computer player that uses Monte
+ * Carlo tree search. Each iteration walks down the tree with the UCT formula
+ * (see {@link MctsTree#select(int, double)}), expands the node it reaches,
+ * plays the rest of the game with random turns from {@link MoveGenerator}
+ * (a playout) and adds the result to every node on the way. The turn played
+ * is the most visited one.
+ * <p>
+ * Playouts are lightly guided: a turn that leaves the moved checker where it
+ * can be skipped is picked again once, and a playout that runs too long is
+ * decided by the material left.
+ * <p>
+ * Several threads run iterations at the same time on the same tree. The tree
+ * is locked while a thread walks down it or adds a result, but not during
+ * the playout, which is where most of the time is spent. Visits are counted
+ * on the way down, so a node being explored counts as a loss until its result
+ * is in (a virtual loss) and the other threads prefer different nodes.
+ * <p>
+ * The tree has a fixed memory budget. After a turn, the subtree under the
+ * turns that were actually played is kept for the next search and the rest
+ * of the nodes are recycled.
+ */
+public class MctsPlayer implements Player {
+	
+	/** The time per move used if none is specified, in milliseconds. */
+	public static final long DEFAULT_MOVE_TIME = 1000;
+	
+	/** The memory used by the tree if none is specified, in megabytes. */
+	public static final int DEFAULT_MEMORY = 64;
+	
+	/** The weight of the exploration bonus in the UCT formula. */
+	private static final double EXPLORATION = 1.0;
+	
+	/** The number of visits a node needs before it is expanded. */
+	private static final int EXPAND_VISITS = 2;
+	
+	/** The maximum number of turns in a playout before it is decided. */
+	private static final int MAX_PLAYOUT = 150;
+	
+	/** The time an idle thread is kept before it stops, in seconds. */
+	private static final long THREAD_KEEP_ALIVE = 30;
+	
+	/** The half points for a win, draw and loss. */
+	private static final int WIN = 2, DRAW = 1, LOSS = 0;
+	
+	/** The tree of statistics, also used as the lock for it. */
+	private final MctsTree tree;
+	
+	/** The time allowed per move in milliseconds. */
+	private long moveTime;
+	
+	/** The number of iterations per move, or 0 for no limit. */
+	private long iterations;
+	
+	/** The number of threads running iterations. */
+	private int threads = 1;
+	
+	/** The threads used besides the calling thread, which stop when idle. */
+	private ThreadPoolExecutor pool;
+	
+	/** The game after the last turn played, to find the opponent's turn. */
+	private Game lastGame;
+	
+	/** The node of the last turn played, or {@link MctsTree#NONE}. */
+	private int lastNode = MctsTree.NONE;
+	
+	/** The number of iterations run for the current move. */
+	private long count;
+	
+	/** The {@link System#nanoTime()} to stop at, or 0 if there is no limit. */
+	private long deadline;
+	
+	public MctsPlayer() {
+		this(DEFAULT_MOVE_TIME);
+	}
+	
+	public MctsPlayer(long moveTime) {
+		this(moveTime, Runtime.getRuntime().availableProcessors(),
+				DEFAULT_MEMORY);
+	}
+	
+	/**
+	 * Creates a player.
+	 * 
+	 * @param moveTime	the time per move in milliseconds.
+	 * @param threads	the number of threads to use.
+	 * @param memory	the memory to use for the tree in megabytes.
+	 */
+	public MctsPlayer(long moveTime, int threads, int memory) {
+		this.tree = new MctsTree((int) Math.min(Integer.MAX_VALUE - 8,
+				memory * 1024L * 1024L / MctsTree.BYTES_PER_NODE));
+		setMoveTime(moveTime);
+		setThreads(threads);
+	}
+	
+	@Override
+	public boolean isHuman() {
+		return false;
+	}
+	
+	@Override
+	public void updateGame(Game game) {
+		
+		// Nothing to do
+		if (game == null || game.isGameOver()) {
+			return;
+		}
+		
+		// Keep what is known about the current position, and search
+		synchronized (tree) {
+			reuseTree(game);
+			this.count = 0;
+		}
+		long time = (moveTime > 0 || iterations > 0)
+				? moveTime : DEFAULT_MOVE_TIME;
+		this.deadline = (time > 0) ? System.nanoTime() + time * 1000000 : 0;
+		ThreadPoolExecutor workers = pool;
+		Future<?>[] tasks = new Future<?>[(workers != null) ? threads - 1 : 0];
+		for (int i = 0; i < tasks.length; i ++) {
+			final Game copy = game.copy();
+			final long seed = System.nanoTime() + i;
+			tasks[i] = workers.submit(() -> run(copy, new Random(seed)));
+		}
+		run(game.copy(), new Random());
+		for (int i = 0; i < tasks.length; i ++) {
+			try {
+				tasks[i].get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (CancellationException ignored) {
+				// The threads were shut down during the search
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+		}
+		
+		// Play the most visited turn
+		synchronized (tree) {
+			int best = tree.getBestChild(0);
+			if (best != MctsTree.NONE && game.makeTurn(tree.getMove(best))) {
+				this.lastGame = game.copy();
+				this.lastNode = best;
+			} else {
+				this.lastGame = null;
+				this.lastNode = MctsTree.NONE;
+			}
+		}
+	}
+	
+	/**
+	 * Moves the root of the tree to the current position, if it is below the
+	 * turn played last time. Otherwise the tree is started again.
+	 * 
+	 * @param game	the current position.
+	 */
+	private void reuseTree(Game game) {
+		
+		// Look for the opponent's turn below the last turn played (if this
+		// player is playing both sides, the position is the last one)
+		int root = MctsTree.NONE;
+		if (lastGame != null && lastGame.getHash() == game.getHash()
+				&& lastGame.isP1Turn() == game.isP1Turn()) {
+			root = lastNode;
+		}
+		int first = (lastNode == MctsTree.NONE)
+				? MctsTree.NONE : tree.getFirstChild(lastNode);
+		for (int i = 0; root == MctsTree.NONE && first != MctsTree.NONE
+				&& i < tree.getChildCount(lastNode); i ++) {
+			lastGame.applyTurn(tree.getMove(first + i));
+			boolean found = lastGame.getHash() == game.getHash()
+					&& lastGame.isP1Turn() == game.isP1Turn();
+			lastGame.unmakeMove();
+			if (found) {
+				root = first + i;
+				break;
+			}
+		}
+		
+		// Keep only that subtree
+		if (root != MctsTree.NONE) {
+			tree.keep(root);
+		} else {
+			tree.reset();
+		}
+		this.lastGame = null;
+		this.lastNode = MctsTree.NONE;
+	}
+	
+	/**
+	 * Runs iterations until the time or iterations run out.
+	 * 
+	 * @param game		a copy of the current position, which is changed
+	 * during an iteration and restored afterwards.
+	 * @param random	the random numbers for the playouts.
+	 */
+	private void run(Game game, Random random) {
+		long[] turns = new long[MoveGenerator.MAX_TURNS];
+		int[] path = new int[Search.MAX_PLY];
+		boolean[] movers = new boolean[Search.MAX_PLY];
+		while (!isDone()) {
+			
+			// Walk down the tree, then expand the node reached
+			int depth = 0;
+			synchronized (tree) {
+				int node = 0;
+				tree.addVisit(node);
+				while (depth < Search.MAX_PLY - 1) {
+					if (tree.getFirstChild(node) == MctsTree.NONE) {
+						if (tree.getVisits(node) < EXPAND_VISITS && node != 0) {
+							break;
+						}
+						int n = MoveGenerator.getTurns(game, turns);
+						if (n == 0 || !tree.expand(node, turns, n)) {
+							break;
+						}
+					}
+					node = tree.select(node, EXPLORATION);
+					movers[depth] = game.isP1Turn();
+					path[depth ++] = node;
+					game.applyTurn(tree.getMove(node));
+					tree.addVisit(node);
+				}
+			}
+			
+			// Play the game out and add the result on the way back up
+			int blackPoints = playout(game, turns, random);
+			synchronized (tree) {
+				for (int i = 0; i < depth; i ++) {
+					tree.addScore(path[i],
+							movers[i] ? blackPoints : WIN - blackPoints);
+				}
+				this.count ++;
+			}
+			for (int i = 0; i < depth; i ++) {
+				game.unmakeMove();
+			}
+		}
+	}
+	
+	/**
+	 * Checks if the search for the current move should stop.
+	 * 
+	 * @return true if the time or iterations ran out.
+	 */
+	private boolean isDone() {
+		if (deadline != 0 && System.nanoTime() - deadline >= 0) {
+			return true;
+		}
+		synchronized (tree) {
+			return iterations > 0 && count >= iterations;
+		}
+	}
+	
+	/**
+	 * Plays random turns until the game ends, then takes them back.
+	 * 
+	 * @param game		the position to play from.
+	 * @param turns		the buffer for the turns generated.
+	 * @param random	the random numbers to use.
+	 * @return the half points scored by black.
+	 */
+	private static int playout(Game game, long[] turns, Random random) {
+		
+		int plies = 0, result;
+		while (true) {
+			
+			// The player with no turns loses
+			int n = MoveGenerator.getTurns(game, turns);
+			if (n == 0) {
+				result = game.isP1Turn() ? LOSS : WIN;
+				break;
+			}
+			
+			// Too long, so decide by the material
+			if (plies >= MAX_PLAYOUT) {
+				int score = ComputerPlayer.evaluate(
+						game.getBoardReference(), true);
+				result = (score > ComputerPlayer.CHECKER) ? WIN
+						: (score < -ComputerPlayer.CHECKER) ? LOSS : DRAW;
+				break;
+			}
+			
+			// Pick a turn, but try again once if it gives a checker away
+			long turn = turns[random.nextInt(n)];
+			if (isGivenAway(game, turn)) {
+				turn = turns[random.nextInt(n)];
+			}
+			game.applyTurn(turn);
+			plies ++;
+		}
+		
+		// Restore the position
+		for (int i = 0; i < plies; i ++) {
+			game.unmakeMove();
+		}
+		
+		return result;
+	}
+	
+	/**
+	 * Checks if a quiet turn leaves the moved checker where the opponent can
+	 * skip it.
+	 * 
+	 * @param game	the position before the turn.
+	 * @param turn	the packed turn.
+	 * @return true if the checker can be skipped after the turn.
+	 */
+	private static boolean isGivenAway(Game game, long turn) {
+		if (MoveGenerator.getCaptured(turn) != 0) {
+			return false;
+		}
+		Board board = game.getBoardReference();
+		boolean isBlack = game.isP1Turn();
+		int end = 1 << MoveGenerator.getTurnEnd(turn);
+		int empty = ~((board.getOccupiedMask()
+				& ~(1 << MoveGenerator.getTurnStart(turn))) | end);
+		int opponent = isBlack ? board.getWhiteMask() : board.getBlackMask();
+		return MoveGenerator.getThreatened(end, opponent, board.getKingMask(),
+				empty, isBlack) != 0;
+	}
+	
+	/**
+	 * Gets the number of iterations run for the last move.
+	 * 
+	 * @return the number of playouts.
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	/**
+	 * Gets the number of nodes in the tree, which includes the nodes kept
+	 * from earlier moves.
+	 * 
+	 * @return the number of nodes.
+	 */
+	public int getTreeSize() {
+		synchronized (tree) {
+			return tree.getSize();
+		}
+	}
+	
+	/**
+	 * Gets the time allowed per move. If neither the time nor the iterations
+	 * are limited, {@link #DEFAULT_MOVE_TIME} is used.
+	 * 
+	 * @return the time per move in milliseconds, or 0 for no limit.
+	 */
+	public long getMoveTime() {
+		return moveTime;
+	}
+	
+	public void setMoveTime(long moveTime) {
+		this.moveTime = Math.max(0, moveTime);
+	}
+	
+	public long getIterations() {
+		return iterations;
+	}
+	
+	/**
+	 * Sets a limit on the number of iterations per move. If there is also a
+	 * time limit, the search stops at whichever comes first.
+	 * 
+	 * @param iterations	the number of iterations, or 0 for no limit.
+	 */
+	public void setIterations(long iterations) {
+		this.iterations = Math.max(0, iterations);
+	}
+	
+	public int getThreads() {
+		return threads;
+	}
+	
+	/**
+	 * Sets the number of threads running iterations, including the calling
+	 * thread.
+	 * 
+	 * @param threads	the number of threads (at least 1).
+	 */
+	public void setThreads(int threads) {
+		threads = Math.max(1, threads);
+		shutdown();
+		this.threads = threads;
+		if (threads > 1) {
+			this.pool = new ThreadPoolExecutor(threads - 1, threads - 1,
+					THREAD_KEEP_ALIVE, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(), r -> {
+				Thread t = new Thread(r, "mcts-worker");
+				t.setDaemon(true);
+				return t;
+			});
+			this.pool.allowCoreThreadTimeOut(true);
+		}
+	}
+	
+	/**
+	 * Stops the threads running iterations. The player can still be used
+	 * afterwards, but only with a single thread.
+	 */
+	@Override
+	public void shutdown() {
+		if (pool != null) {
+			
+			// Cancel the iterations not started, so nothing waits for them
+			for (Runnable task : pool.shutdownNow()) {
+				((Future<?>) task).cancel(false);
+			}
+			this.pool = null;
+		}
+		this.threads = 1;
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[moveTime=" + moveTime
+				+ ", iterations=" + iterations + ", threads=" + threads + "]";
+	}
+}
@@ -0,0 +1,270 @@
+/* Description: This class stores the game tree built by a Monte Carlo tree
+ * search in a fixed pool of arrays.
+ */
+
+package ai;
+
+/**
+ * The {@code MctsTree} class is the tree of a Monte Carlo tree search. The
+ * nodes are stored in parallel primitive arrays of a fixed capacity rather
+ * than as objects, so the tree costs {@link #BYTES_PER_NODE} bytes per node
+ * and creates no garbage. Node 0 is the root.
+ * <p>
+ * The children of a node are created together when it is expanded, and are
+ * stored next to each other, so a node only needs the index of its first
+ * child and the number of children. A child always has a larger index than
+ * its parent.
+ * <p>
+ * Nodes are allocated from the end of the used part of the pool. Once the
+ * pool is full, nodes are no longer expanded. When a move is played, only
+ * the subtree under it is kept with {@link #keep(int)}, which moves it to
+ * the start of the pool so the rest of the nodes can be used again.
+ * <p>
+ * The tree does no locking: it must only be used by one thread at a time.
+ */
+class MctsTree {
+	
+	/** The memory used by each node, in bytes. */
+	static final int BYTES_PER_NODE = 32;
+	
+	/** The index used for a missing node. */
+	static final int NONE = -1;
+	
+	/** The packed turn leading to each node. */
+	private final long[] moves;
+	
+	/** The parent of each node. */
+	private final int[] parents;
+	
+	/** The first child of each node, or {@link #NONE} if not expanded. */
+	private final int[] children;
+	
+	/** The number of children of each node. */
+	private final int[] childCounts;
+	
+	/** The number of times each node was visited. */
+	private final int[] visits;
+	
+	/**
+	 * The total score of each node in half points (2 for a win, 1 for a
+	 * draw) for the player that made the turn leading to it.
+	 */
+	private final int[] scores;
+	
+	/** The new index of each node while the tree is compacted. */
+	private final int[] remap;
+	
+	/** The number of nodes in use. */
+	private int size;
+	
+	/**
+	 * Creates a tree with room for a fixed number of nodes.
+	 * 
+	 * @param capacity	the maximum number of nodes (at least 1).
+	 */
+	MctsTree(int capacity) {
+		capacity = Math.max(1, capacity);
+		this.moves = new long[capacity];
+		this.parents = new int[capacity];
+		this.children = new int[capacity];
+		this.childCounts = new int[capacity];
+		this.visits = new int[capacity];
+		this.scores = new int[capacity];
+		this.remap = new int[capacity];
+		reset();
+	}
+	
+	/**
+	 * Removes every node except a new, empty root.
+	 */
+	void reset() {
+		this.size = 1;
+		init(0, Search.NO_MOVE, NONE);
+	}
+	
+	/**
+	 * Creates the children of a node, one for each turn available.
+	 * 
+	 * @param node	the node to expand.
+	 * @param turns	the turns available from the node.
+	 * @param n		the number of turns.
+	 * @return true if the node has children, false if there is no room left
+	 * in the pool.
+	 */
+	boolean expand(int node, long[] turns, int n) {
+		
+		// Already expanded or no room
+		if (children[node] != NONE) {
+			return true;
+		} else if (size + n > moves.length) {
+			return false;
+		}
+		
+		// Create the children next to each other
+		for (int i = 0; i < n; i ++) {
+			init(size + i, turns[i], node);
+		}
+		children[node] = size;
+		childCounts[node] = n;
+		size += n;
+		
+		return true;
+	}
+	
+	/**
+	 * Sets up a new node.
+	 * 
+	 * @param node		the index of the node.
+	 * @param move		the turn leading to the node.
+	 * @param parent	the parent of the node.
+	 */
+	private void init(int node, long move, int parent) {
+		moves[node] = move;
+		parents[node] = parent;
+		children[node] = NONE;
+		childCounts[node] = 0;
+		visits[node] = 0;
+		scores[node] = 0;
+	}
+	
+	/**
+	 * Chooses the child of a node to explore with the UCT formula: the
+	 * average score plus a bonus for children that were rarely visited. A
+	 * child that was never visited is always chosen first.
+	 * 
+	 * @param node			the expanded node.
+	 * @param exploration	the weight of the exploration bonus.
+	 * @return the child to explore.
+	 */
+	int select(int node, double exploration) {
+		
+		int first = children[node], last = first + childCounts[node];
+		double logVisits = Math.log(Math.max(1, visits[node]));
+		int best = first;
+		double bestValue = Double.NEGATIVE_INFINITY;
+		for (int child = first; child < last; child ++) {
+			int n = visits[child];
+			if (n == 0) {
+				return child;
+			}
+			double value = scores[child] / (2.0 * n)
+					+ exploration * Math.sqrt(logVisits / n);
+			if (value > bestValue) {
+				bestValue = value;
+				best = child;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Gets the most visited child of a node, which is the most reliable
+	 * choice of move.
+	 * 
+	 * @param node	the node.
+	 * @return the most visited child, or {@link #NONE} if the node has no
+	 * children.
+	 */
+	int getBestChild(int node) {
+		int first = children[node], last = first + childCounts[node];
+		int best = NONE;
+		for (int child = first; child < last && first != NONE; child ++) {
+			if (best == NONE || visits[child] > visits[best]) {
+				best = child;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Keeps only the subtree under a node, which becomes the root. The nodes
+	 * are moved to the start of the pool in the same order, so the nodes
+	 * freed can be used again.
+	 * 
+	 * @param root	the node to keep as the new root.
+	 */
+	void keep(int root) {
+		
+		// Nothing to remove
+		if (root == 0) {
+			return;
+		}
+		
+		// Find the new index of each node in the subtree. A child comes after
+		// its parent, so the parent is always known to be kept or not
+		int count = 0;
+		for (int i = root; i < size; i ++) {
+			if (i == root || (parents[i] >= root && remap[parents[i]] != NONE)) {
+				remap[i] = count ++;
+			} else {
+				remap[i] = NONE;
+			}
+		}
+		
+		// Move each node down, which never overwrites a node still to move
+		for (int i = root; i < size; i ++) {
+			int j = remap[i];
+			if (j == NONE) {
+				continue;
+			}
+			moves[j] = moves[i];
+			parents[j] = (i == root) ? NONE : remap[parents[i]];
+			children[j] = (children[i] == NONE) ? NONE : remap[children[i]];
+			childCounts[j] = childCounts[i];
+			visits[j] = visits[i];
+			scores[j] = scores[i];
+		}
+		this.size = count;
+	}
+	
+	/**
+	 * Adds a visit to a node. Visits are added on the way down the tree, so
+	 * a node being explored by another thread counts as a loss until its
+	 * result is added (a virtual loss), which spreads the threads out.
+	 * 
+	 * @param node	the node visited.
+	 */
+	void addVisit(int node) {
+		visits[node] ++;
+	}
+	
+	/**
+	 * Adds the result of a playout to a node.
+	 * 
+	 * @param node		the node.
+	 * @param points	the half points won by the player that made the turn
+	 * leading to the node.
+	 */
+	void addScore(int node, int points) {
+		scores[node] += points;
+	}
+	
+	long getMove(int node) {
+		return moves[node];
+	}
+	
+	int getFirstChild(int node) {
+		return children[node];
+	}
+	
+	int getChildCount(int node) {
+		return childCounts[node];
+	}
+	
+	int getVisits(int node) {
+		return visits[node];
+	}
+	
+	int getScore(int node) {
+		return scores[node];
+	}
+	
+	int getSize() {
+		return size;
+	}
+	
+	int getCapacity() {
+		return moves.length;
+	}
+}
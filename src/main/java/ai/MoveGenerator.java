@@ -10,13 +10,56 @@ import java.util.ArrayList;
 import java.util.List;
 
 import model.Board;
+import model.Game;
 
 /**
  * The {@code MoveGenerator} class provides a method for determining if a given
  * checker can make any move or skip.
+ * <p>
+ * Moves are generated directly from the bitboards of a {@link Board} (see
+ * {@link Board#getOccupiedMask()}), where bit {@code i} is tile index
+ * {@code i}. Each diagonal direction is a shift by 3, 4 or 5 bits depending
+ * on the parity of the row, so whole sets of checkers are moved at once with
+ * {@link #downLeft(int)}, {@link #downRight(int)}, {@link #upLeft(int)} and
+ * {@link #upRight(int)}. Individual moves are packed into a single integer
+ * with {@link #encode(int, int)}. The {@link Point} based methods are thin
+ * adapters kept for the user interface.
+ * <p>
+ * A whole turn, including every skip of a multiple skip, can also be packed
+ * into a single long with {@link #encodeTurn(int, int, int, boolean)}: the
+ * low 32 bits are the bitboard of captured tiles, followed by the start and
+ * end index and a flag set if the checker is crowned (which ends the turn).
+ * The turns are generated by {@link #getTurns(Game, long[])}, so a search
+ * sees one node per turn rather than one per skip.
  */
 public class MoveGenerator {
-
+	
+	/** The maximum number of moves or skips available in any position. */
+	public static final int MAX_MOVES = 64;
+	
+	/** The flag set in a packed move if the move is a skip. */
+	public static final int SKIP_FLAG = 1 << 10;
+	
+	/** The maximum number of turns available in any position. */
+	public static final int MAX_TURNS = 128;
+	
+	/** The flag set in a packed turn if the checker is crowned. */
+	public static final long PROMOTION_FLAG = 1L << 42;
+	
+	/* ----- BITBOARD MASKS ----- */
+	/** The tiles on rows 0, 2, 4 and 6 (x is odd). */
+	private static final int EVEN_ROWS = 0x0F0F0F0F;
+	
+	/** The tiles on rows 1, 3, 5 and 7 (x is even). */
+	private static final int ODD_ROWS = 0xF0F0F0F0;
+	
+	/** The tiles on even rows that are not on the right edge. */
+	private static final int EVEN_ROWS_NOT_RIGHT = 0x07070707;
+	
+	/** The tiles on odd rows that are not on the left edge. */
+	private static final int ODD_ROWS_NOT_LEFT = 0xE0E0E0E0;
+	/* ------------ */
+	
 	/**
 	 * Gets a list of move end-points for a given start index.
 	 * 
@@ -37,30 +80,10 @@ public class MoveGenerator {
 	 * @param startIndex	the center index to look for moves around.
 	 * @return the list of points such that the start to a given point
 	 * represents a move available.
-	 * @see {@link #getMoves(Board, Point)}
+	 * @see {@link #getMoves(Board, Point)}, {@link #getMoveTargets(Board, int)}
 	 */
 	public static List<Point> getMoves(Board board, int startIndex) {
-		
-		// Trivial cases
-		List<Point> endPoints = new ArrayList<>();
-		if (board == null || !Board.isValidTileIndex(startIndex)) {
-			return endPoints;
-		}
-		
-		// Determine possible points
-		int id = board.get(startIndex);
-		Point p = Board.toPoint(startIndex);
-		addPoints(endPoints, p, id, 1);
-		
-		// Remove invalid points
-		for (int i = 0; i < endPoints.size(); i ++) {
-			Point end = endPoints.get(i);
-			if (board.get(end.x, end.y) != Board.EMPTY) {
-				endPoints.remove(i --);
-			}
-		}
-		
-		return endPoints;
+		return toPoints(getMoveTargets(board, startIndex));
 	}
 	
 	/**
@@ -83,32 +106,706 @@ public class MoveGenerator {
 	 * @param startIndex	the center index to look for skips around.
 	 * @return the list of points such that the start to a given point
 	 * represents a skip available.
-	 * @see {@link #getSkips(Board, Point)}
+	 * @see {@link #getSkips(Board, Point)}, {@link #getSkipTargets(Board, int)}
 	 */
 	public static List<Point> getSkips(Board board, int startIndex) {
+		return toPoints(getSkipTargets(board, startIndex));
+	}
+	
+	/**
+	 * Gets the empty tiles that the checker at the start index can move to
+	 * with a regular (non-skip) move.
+	 * 
+	 * @param board			the board to look for available moves.
+	 * @param startIndex	the index of the checker to move.
+	 * @return the bitboard of end tiles, or 0 if there is no checker.
+	 */
+	public static int getMoveTargets(Board board, int startIndex) {
 		
 		// Trivial cases
-		List<Point> endPoints = new ArrayList<>();
 		if (board == null || !Board.isValidTileIndex(startIndex)) {
-			return endPoints;
+			return 0;
+		}
+		int checker = 1 << startIndex;
+		int occupied = board.getOccupiedMask();
+		if ((occupied & checker) == 0) {
+			return 0;
 		}
 		
-		// Determine possible points
-		int id = board.get(startIndex);
-		Point p = Board.toPoint(startIndex);
-		addPoints(endPoints, p, id, 2);
+		// Shift the checker in each allowed direction
+		int targets = 0;
+		boolean isKing = (board.getKingMask() & checker) != 0;
+		boolean isBlack = (board.getBlackMask() & checker) != 0;
+		if (isKing || isBlack) {
+			targets |= downLeft(checker) | downRight(checker);
+		}
+		if (isKing || !isBlack) {
+			targets |= upLeft(checker) | upRight(checker);
+		}
+		
+		return targets & ~occupied;
+	}
+	
+	/**
+	 * Gets the tiles that the checker at the start index can land on by
+	 * skipping an opponent's checker.
+	 * 
+	 * @param board			the board to look for available skips.
+	 * @param startIndex	the index of the checker to move.
+	 * @return the bitboard of end tiles, or 0 if there is no checker.
+	 */
+	public static int getSkipTargets(Board board, int startIndex) {
+		
+		// Trivial cases
+		if (board == null || !Board.isValidTileIndex(startIndex)) {
+			return 0;
+		}
+		int checker = 1 << startIndex;
+		int occupied = board.getOccupiedMask();
+		if ((occupied & checker) == 0) {
+			return 0;
+		}
+		
+		// Shift over an opponent in each allowed direction
+		int targets = 0;
+		boolean isKing = (board.getKingMask() & checker) != 0;
+		boolean isBlack = (board.getBlackMask() & checker) != 0;
+		int opponent = isBlack ? board.getWhiteMask() : board.getBlackMask();
+		if (isKing || isBlack) {
+			targets |= downLeft(downLeft(checker) & opponent);
+			targets |= downRight(downRight(checker) & opponent);
+		}
+		if (isKing || !isBlack) {
+			targets |= upLeft(upLeft(checker) & opponent);
+			targets |= upRight(upRight(checker) & opponent);
+		}
+		
+		return targets & ~occupied;
+	}
+	
+	/**
+	 * Gets all the checkers of one player that can make a regular (non-skip)
+	 * move.
+	 * 
+	 * @param board		the board to check against.
+	 * @param isBlack	the flag indicating if black checkers should be observed.
+	 * @return the bitboard of checkers with at least one regular move.
+	 */
+	public static int getMovers(Board board, boolean isBlack) {
+		
+		if (board == null) {
+			return 0;
+		}
+		
+		// A checker can move in a direction if the reverse shift of the empty
+		// tiles lands on it
+		int empty = ~board.getOccupiedMask();
+		int kings = board.getKingMask();
+		int movers;
+		if (isBlack) {
+			int pieces = board.getBlackMask();
+			movers = (upRight(empty) | upLeft(empty)) & pieces;
+			movers |= (downRight(empty) | downLeft(empty)) & pieces & kings;
+		} else {
+			int pieces = board.getWhiteMask();
+			movers = (downRight(empty) | downLeft(empty)) & pieces;
+			movers |= (upRight(empty) | upLeft(empty)) & pieces & kings;
+		}
+		
+		return movers;
+	}
+	
+	/**
+	 * Gets all the checkers of one player that can skip an opponent's checker.
+	 * 
+	 * @param board		the board to check against.
+	 * @param isBlack	the flag indicating if black checkers should be observed.
+	 * @return the bitboard of checkers with at least one skip.
+	 */
+	public static int getJumpers(Board board, boolean isBlack) {
+		
+		if (board == null) {
+			return 0;
+		}
+		
+		// A checker can skip if the reverse shift of the empty tiles lands on
+		// an opponent, and the reverse shift of that lands on the checker
+		int empty = ~board.getOccupiedMask();
+		int kings = board.getKingMask();
+		int pieces = isBlack ? board.getBlackMask() : board.getWhiteMask();
+		int opponent = isBlack ? board.getWhiteMask() : board.getBlackMask();
+		int down = upRight(upRight(empty) & opponent)
+				| upLeft(upLeft(empty) & opponent);
+		int up = downRight(downRight(empty) & opponent)
+				| downLeft(downLeft(empty) & opponent);
+		if (isBlack) {
+			return pieces & (down | (up & kings));
+		}
+		
+		return pieces & (up | (down & kings));
+	}
+	
+	/**
+	 * Gets all the checkers of one player that the opponent could skip if it
+	 * were the opponent's turn, i.e. the checkers that are not safe. The
+	 * whole board is checked at once with a few shifts of the bitboards.
+	 * 
+	 * @param board		the board to check against.
+	 * @param isBlack	the flag indicating if black checkers should be observed.
+	 * @return the bitboard of threatened checkers.
+	 * @see {@link MoveLogic#isSafe(Board, int)}
+	 */
+	public static int getThreatened(Board board, boolean isBlack) {
+		
+		if (board == null) {
+			return 0;
+		}
+		
+		int pieces = isBlack ? board.getBlackMask() : board.getWhiteMask();
+		int opponent = isBlack ? board.getWhiteMask() : board.getBlackMask();
+		
+		return getThreatened(pieces, opponent, board.getKingMask(),
+				~board.getOccupiedMask(), isBlack);
+	}
+	
+	/**
+	 * Gets the checkers that the opponent could skip, from the bitboards of a
+	 * board. This allows a board that has not been made yet (e.g. the board
+	 * after a move) to be checked.
+	 * 
+	 * @param pieces	the bitboard of checkers to check.
+	 * @param opponent	the bitboard of the opponent's checkers.
+	 * @param kings		the bitboard of kings (of either player).
+	 * @param empty		the bitboard of empty tiles.
+	 * @param isBlack	the flag indicating if the checkers to check are black.
+	 * @return the bitboard of threatened checkers.
+	 */
+	static int getThreatened(int pieces, int opponent, int kings, int empty,
+			boolean isBlack) {
+		
+		// The opponents that can skip down (black checkers and kings) and up
+		// (white checkers and kings)
+		int down = isBlack ? opponent & kings : opponent;
+		int up = isBlack ? opponent : opponent & kings;
+		
+		// A checker is threatened if an opponent is next to it and the tile
+		// behind it, in the same direction, is empty
+		int threatened = (downLeft(down) & upRight(empty))
+				| (downRight(down) & upLeft(empty))
+				| (upLeft(up) & downRight(empty))
+				| (upRight(up) & downLeft(empty));
+		
+		return pieces & threatened;
+	}
+	
+	/**
+	 * Generates every move available to the player whose turn it is, taking
+	 * into account a skip that must be continued. Skips are mandatory, so if
+	 * any skip exists only skips are generated.
+	 * 
+	 * @param game	the game to generate moves for.
+	 * @param moves	the array to store the packed moves in, which should have
+	 * room for at least {@link #MAX_MOVES} moves.
+	 * @return the number of moves stored.
+	 * @see {@link #getMoves(Board, boolean, int[])}
+	 */
+	public static int getMoves(Game game, int[] moves) {
+		
+		// The next move needs to be a skip
+		int skipIndex = game.getSkipIndex();
+		if (Board.isValidTileIndex(skipIndex)) {
+			return addMoves(moves, 0, skipIndex, getSkipTargets(
+					game.getBoardReference(), skipIndex), SKIP_FLAG);
+		}
+		
+		return getMoves(game.getBoardReference(), game.isP1Turn(), moves);
+	}
+	
+	/**
+	 * Generates every move available to one player on the board. Skips are
+	 * mandatory, so if any skip exists only skips are generated.
+	 * 
+	 * @param board		the board to generate moves for.
+	 * @param isBlack	the flag indicating if black checkers should be moved.
+	 * @param moves		the array to store the packed moves in, which should
+	 * have room for at least {@link #MAX_MOVES} moves.
+	 * @return the number of moves stored.
+	 * @see {@link #encode(int, int)}
+	 */
+	public static int getMoves(Board board, boolean isBlack, int[] moves) {
 		
-		// Remove invalid points
-		for (int i = 0; i < endPoints.size(); i ++) {
+		// Skips first, as they must be taken
+		int count = 0;
+		int jumpers = getJumpers(board, isBlack);
+		while (jumpers != 0) {
+			int start = Integer.numberOfTrailingZeros(jumpers);
+			jumpers &= jumpers - 1;
+			count = addMoves(moves, count, start,
+					getSkipTargets(board, start), SKIP_FLAG);
+		}
+		if (count > 0) {
+			return count;
+		}
+		
+		// Regular moves
+		int movers = getMovers(board, isBlack);
+		while (movers != 0) {
+			int start = Integer.numberOfTrailingZeros(movers);
+			movers &= movers - 1;
+			count = addMoves(moves, count, start,
+					getMoveTargets(board, start), 0);
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Generates every complete turn available to the player whose turn it is.
+	 * A multiple skip is generated as one turn that captures every checker
+	 * skipped. If a skip must be continued, only the turns continuing it are
+	 * generated.
+	 * 
+	 * @param game	the game to generate turns for.
+	 * @param turns	the array to store the packed turns in, which should have
+	 * room for at least {@link #MAX_TURNS} turns.
+	 * @return the number of turns stored.
+	 * @see {@link #getTurns(Board, boolean, long[])}
+	 */
+	public static int getTurns(Game game, long[] turns) {
+		
+		// The turn continues a skip
+		int skipIndex = game.getSkipIndex();
+		if (Board.isValidTileIndex(skipIndex)) {
+			return getChains(game.getBoardReference(), skipIndex, turns, 0);
+		}
+		
+		return getTurns(game.getBoardReference(), game.isP1Turn(), turns);
+	}
+	
+	/**
+	 * Generates every complete turn available to one player on the board.
+	 * Skips are mandatory, so if any skip exists only the longest chains of
+	 * skips from each start are generated (a chain can only end when no
+	 * further skip is possible, or when the checker is crowned).
+	 * 
+	 * @param board		the board to generate turns for.
+	 * @param isBlack	the flag indicating if black checkers should be moved.
+	 * @param turns		the array to store the packed turns in, which should
+	 * have room for at least {@link #MAX_TURNS} turns.
+	 * @return the number of turns stored.
+	 * @see {@link #encodeTurn(int, int, int, boolean)}
+	 */
+	public static int getTurns(Board board, boolean isBlack, long[] turns) {
+		
+		// Skips first, as they must be taken
+		int count = 0;
+		int jumpers = getJumpers(board, isBlack);
+		while (jumpers != 0) {
+			int start = Integer.numberOfTrailingZeros(jumpers);
+			jumpers &= jumpers - 1;
+			count = getChains(board, start, turns, count);
+		}
+		if (count > 0) {
+			return count;
+		}
+		
+		// Regular moves
+		int movers = getMovers(board, isBlack);
+		int kings = board.getKingMask();
+		while (movers != 0) {
+			int start = Integer.numberOfTrailingZeros(movers);
+			movers &= movers - 1;
+			int targets = getMoveTargets(board, start);
+			boolean isKing = (kings & (1 << start)) != 0;
+			while (targets != 0) {
+				int end = Integer.numberOfTrailingZeros(targets);
+				targets &= targets - 1;
+				turns[count ++] = encodeTurn(start, end, 0,
+						!isKing && Board.isCrowningTile(end, isBlack));
+			}
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Generates every complete chain of skips for the checker at the start
+	 * index. Chains that end on the same tile and capture the same checkers
+	 * are only generated once.
+	 * 
+	 * @param board			the board to generate chains for.
+	 * @param startIndex	the index of the checker to move.
+	 * @param turns			the array to store the packed turns in.
+	 * @param count			the number of turns already in the array.
+	 * @return the new number of turns in the array.
+	 */
+	public static int getChains(Board board, int startIndex, long[] turns,
+			int count) {
+		
+		// Trivial cases
+		if (board == null || !Board.isValidTileIndex(startIndex)) {
+			return count;
+		}
+		int checker = 1 << startIndex;
+		if ((board.getOccupiedMask() & checker) == 0) {
+			return count;
+		}
+		
+		// The checker leaves its start tile, so it may end a loop there
+		boolean isBlack = (board.getBlackMask() & checker) != 0;
+		boolean isKing = (board.getKingMask() & checker) != 0;
+		int opponent = isBlack ? board.getWhiteMask() : board.getBlackMask();
+		int empty = ~board.getOccupiedMask() | checker;
+		
+		return addChains(turns, count, count, startIndex, startIndex, 0,
+				opponent, empty, isBlack, isKing);
+	}
+	
+	/**
+	 * Extends a chain of skips in every allowed direction, adding a turn for
+	 * each chain that cannot be extended any further.
+	 * 
+	 * @param turns		the array to add the turns to.
+	 * @param first		the index of the first turn of this start tile.
+	 * @param count		the number of turns already in the array.
+	 * @param start		the start index of the chain.
+	 * @param at		the index the checker has reached.
+	 * @param captured	the bitboard of checkers captured so far.
+	 * @param opponent	the bitboard of the opponent's checkers.
+	 * @param empty		the bitboard of empty tiles.
+	 * @param isBlack	the flag indicating if the checker is black.
+	 * @param isKing	the flag indicating if the checker is a king.
+	 * @return the new number of turns in the array.
+	 */
+	private static int addChains(long[] turns, int first, int count,
+			int start, int at, int captured, int opponent, int empty,
+			boolean isBlack, boolean isKing) {
+		
+		// Try to skip in each direction
+		int checker = 1 << at;
+		boolean extended = false;
+		for (int direction = 0; direction < 4; direction ++) {
+			boolean down = direction < 2;
+			if (!isKing && down != isBlack) {
+				continue;
+			}
+			int middle = shift(checker, direction) & opponent & ~captured;
+			int end = shift(middle, direction) & empty;
+			if (end == 0) {
+				continue;
+			}
 			
-			// Check that the skip is valid
-			Point end = endPoints.get(i);
-			if (!isValidSkip(board, startIndex, Board.toTileIndex(end))) {
-				endPoints.remove(i --);
+			// Crowning ends the turn, otherwise keep skipping
+			extended = true;
+			int endIndex = Integer.numberOfTrailingZeros(end);
+			if (!isKing && Board.isCrowningTile(endIndex, isBlack)) {
+				count = addTurn(turns, first, count,
+						encodeTurn(start, endIndex, captured | middle, true));
+			} else {
+				count = addChains(turns, first, count, start, endIndex,
+						captured | middle, opponent, empty, isBlack, isKing);
 			}
 		}
-
-		return endPoints;
+		
+		// The chain is complete
+		if (!extended && captured != 0) {
+			count = addTurn(turns, first, count,
+					encodeTurn(start, at, captured, false));
+		}
+		
+		return count;
+	}
+	
+	/**
+	 * Adds a turn to the array unless it was already added.
+	 * 
+	 * @param turns	the array to add the turn to.
+	 * @param first	the index of the first turn that could be the same.
+	 * @param count	the number of turns already in the array.
+	 * @param turn	the packed turn.
+	 * @return the new number of turns in the array.
+	 */
+	private static int addTurn(long[] turns, int first, int count, long turn) {
+		for (int i = first; i < count; i ++) {
+			if (turns[i] == turn) {
+				return count;
+			}
+		}
+		turns[count ++] = turn;
+		return count;
+	}
+	
+	/**
+	 * Shifts every tile one step diagonally in a direction.
+	 * 
+	 * @param tiles		the bitboard of tiles to shift.
+	 * @param direction	{@link Board#DOWN_LEFT}, {@link Board#DOWN_RIGHT},
+	 * {@link Board#UP_LEFT} or {@link Board#UP_RIGHT}.
+	 * @return the shifted bitboard.
+	 */
+	private static int shift(int tiles, int direction) {
+		switch (direction) {
+		case Board.DOWN_LEFT:
+			return downLeft(tiles);
+		case Board.DOWN_RIGHT:
+			return downRight(tiles);
+		case Board.UP_LEFT:
+			return upLeft(tiles);
+		default:
+			return upRight(tiles);
+		}
+	}
+	
+	/**
+	 * Packs a complete turn into a single long.
+	 * 
+	 * @param startIndex	the start index of the turn.
+	 * @param endIndex		the index the checker ends on.
+	 * @param captured		the bitboard of captured checkers.
+	 * @param promoted		the flag indicating if the checker is crowned.
+	 * @return the packed turn.
+	 * @see {@link #getTurnStart(long)}, {@link #getTurnEnd(long)},
+	 * {@link #getCaptured(long)}, {@link #isPromotion(long)}
+	 */
+	public static long encodeTurn(int startIndex, int endIndex, int captured,
+			boolean promoted) {
+		long turn = (captured & 0xFFFFFFFFL) | ((long) startIndex << 32)
+				| ((long) endIndex << 37);
+		return promoted ? turn | PROMOTION_FLAG : turn;
+	}
+	
+	/**
+	 * Gets the start index of a packed turn.
+	 * 
+	 * @param turn	the packed turn.
+	 * @return the start index.
+	 */
+	public static int getTurnStart(long turn) {
+		return (int) (turn >>> 32) & 31;
+	}
+	
+	/**
+	 * Gets the index a packed turn ends on.
+	 * 
+	 * @param turn	the packed turn.
+	 * @return the end index.
+	 */
+	public static int getTurnEnd(long turn) {
+		return (int) (turn >>> 37) & 31;
+	}
+	
+	/**
+	 * Gets the checkers captured by a packed turn.
+	 * 
+	 * @param turn	the packed turn.
+	 * @return the bitboard of captured checkers, 0 for a regular move.
+	 */
+	public static int getCaptured(long turn) {
+		return (int) turn;
+	}
+	
+	/**
+	 * Checks if the checker is crowned by a packed turn.
+	 * 
+	 * @param turn	the packed turn.
+	 * @return true if the checker becomes a king.
+	 */
+	public static boolean isPromotion(long turn) {
+		return (turn & PROMOTION_FLAG) != 0;
+	}
+	
+	/**
+	 * Gets the tiles a checker lands on during a turn, in order, so the turn
+	 * can be shown or made one skip at a time.
+	 * 
+	 * @param board	the board before the turn.
+	 * @param turn	the packed turn.
+	 * @return the indices landed on, ending with the end index of the turn.
+	 */
+	public static int[] getPath(Board board, long turn) {
+		
+		// A regular move has a single step
+		int start = getTurnStart(turn), end = getTurnEnd(turn);
+		int remaining = getCaptured(turn);
+		if (remaining == 0) {
+			return new int[] {end};
+		}
+		
+		// Follow the captured checkers from the start, keeping to tiles the
+		// checker can land on
+		int checker = 1 << start;
+		int empty = ~board.getOccupiedMask() | checker;
+		int directions = ((board.getKingMask() & checker) != 0) ? 0xF
+				: ((board.getBlackMask() & checker) != 0) ? 0x3 : 0xC;
+		int[] path = new int[Integer.bitCount(remaining)];
+		if (!findPath(path, 0, checker, end, remaining, empty, directions)) {
+			throw new IllegalArgumentException("no path for turn "
+					+ Long.toHexString(turn));
+		}
+		
+		return path;
+	}
+	
+	/**
+	 * Searches for the order in which a turn captures its checkers.
+	 * 
+	 * @param path		the array to store the landing indices in.
+	 * @param step		the number of skips already made.
+	 * @param at		the bitboard of the tile the checker is on.
+	 * @param end		the end index of the turn.
+	 * @param remaining	the bitboard of checkers still to capture.
+	 * @param empty		the bitboard of empty tiles.
+	 * @param directions	the bits of the directions the checker can move in
+	 * (see {@link #shift(int, int)}).
+	 * @return true if a path was found.
+	 */
+	private static boolean findPath(int[] path, int step, int at, int end,
+			int remaining, int empty, int directions) {
+		if (remaining == 0) {
+			return at == 1 << end;
+		}
+		for (int direction = 0; direction < 4; direction ++) {
+			if ((directions & (1 << direction)) == 0) {
+				continue;
+			}
+			int middle = shift(at, direction) & remaining;
+			int next = shift(middle, direction) & empty;
+			if (next == 0) {
+				continue;
+			}
+			path[step] = Integer.numberOfTrailingZeros(next);
+			if (findPath(path, step + 1, next, end, remaining & ~middle,
+					empty, directions)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Packs a move into a single integer.
+	 * 
+	 * @param startIndex	the start index of the move.
+	 * @param endIndex		the end index of the move.
+	 * @return the packed move, with {@link #SKIP_FLAG} set if the move jumps
+	 * over a tile.
+	 * @see {@link #getStartIndex(int)}, {@link #getEndIndex(int)}
+	 */
+	public static int encode(int startIndex, int endIndex) {
+		int move = startIndex | (endIndex << 5);
+		int dy = (endIndex >> 2) - (startIndex >> 2);
+		return (dy == 2 || dy == -2) ? move | SKIP_FLAG : move;
+	}
+	
+	/**
+	 * Gets the start index of a packed move.
+	 * 
+	 * @param move	the packed move.
+	 * @return the start index.
+	 * @see {@link #encode(int, int)}
+	 */
+	public static int getStartIndex(int move) {
+		return move & 31;
+	}
+	
+	/**
+	 * Gets the end index of a packed move.
+	 * 
+	 * @param move	the packed move.
+	 * @return the end index.
+	 * @see {@link #encode(int, int)}
+	 */
+	public static int getEndIndex(int move) {
+		return (move >> 5) & 31;
+	}
+	
+	/**
+	 * Checks if a packed move is a skip.
+	 * 
+	 * @param move	the packed move.
+	 * @return true if and only if the move jumps over a tile.
+	 */
+	public static boolean isSkip(int move) {
+		return (move & SKIP_FLAG) != 0;
+	}
+	
+	/**
+	 * Shifts every tile one step diagonally down and to the left (increasing
+	 * y, decreasing x). Tiles that would leave the board are dropped.
+	 * 
+	 * @param tiles	the bitboard of tiles to shift.
+	 * @return the shifted bitboard.
+	 */
+	public static int downLeft(int tiles) {
+		return ((tiles & EVEN_ROWS) << 4) | ((tiles & ODD_ROWS_NOT_LEFT) << 3);
+	}
+	
+	/**
+	 * Shifts every tile one step diagonally down and to the right (increasing
+	 * y, increasing x). Tiles that would leave the board are dropped.
+	 * 
+	 * @param tiles	the bitboard of tiles to shift.
+	 * @return the shifted bitboard.
+	 */
+	public static int downRight(int tiles) {
+		return ((tiles & EVEN_ROWS_NOT_RIGHT) << 5) | ((tiles & ODD_ROWS) << 4);
+	}
+	
+	/**
+	 * Shifts every tile one step diagonally up and to the left (decreasing
+	 * y, decreasing x). Tiles that would leave the board are dropped.
+	 * 
+	 * @param tiles	the bitboard of tiles to shift.
+	 * @return the shifted bitboard.
+	 */
+	public static int upLeft(int tiles) {
+		return ((tiles & EVEN_ROWS) >>> 4) | ((tiles & ODD_ROWS_NOT_LEFT) >>> 5);
+	}
+	
+	/**
+	 * Shifts every tile one step diagonally up and to the right (decreasing
+	 * y, increasing x). Tiles that would leave the board are dropped.
+	 * 
+	 * @param tiles	the bitboard of tiles to shift.
+	 * @return the shifted bitboard.
+	 */
+	public static int upRight(int tiles) {
+		return ((tiles & EVEN_ROWS_NOT_RIGHT) >>> 3) | ((tiles & ODD_ROWS) >>> 4);
+	}
+	
+	/**
+	 * Adds a packed move for every end tile in a bitboard.
+	 * 
+	 * @param moves			the array to add the moves to.
+	 * @param count			the number of moves already in the array.
+	 * @param startIndex	the start index of the moves.
+	 * @param targets		the bitboard of end tiles.
+	 * @param flags			the flags to add to every move.
+	 * @return the new number of moves in the array.
+	 */
+	private static int addMoves(int[] moves, int count, int startIndex,
+			int targets, int flags) {
+		while (targets != 0) {
+			int end = Integer.numberOfTrailingZeros(targets);
+			targets &= targets - 1;
+			moves[count ++] = startIndex | (end << 5) | flags;
+		}
+		return count;
+	}
+	
+	/**
+	 * Converts a bitboard to a list of points, in tile index order.
+	 * 
+	 * @param tiles	the bitboard to convert.
+	 * @return the list of points for each set bit.
+	 */
+	private static List<Point> toPoints(int tiles) {
+		List<Point> points = new ArrayList<>(Integer.bitCount(tiles));
+		while (tiles != 0) {
+			points.add(Board.toPoint(Integer.numberOfTrailingZeros(tiles)));
+			tiles &= tiles - 1;
+		}
+		return points;
 	}
 	
 	/**
@@ -125,7 +822,7 @@ public class MoveGenerator {
 		if (board == null) {
 			return false;
 		}
-
+		
 		// Check that end is empty
 		if (board.get(endIndex) != Board.EMPTY) {
 			return false;
@@ -133,7 +830,7 @@ public class MoveGenerator {
 		
 		// Check that middle is enemy
 		int id = board.get(startIndex);
-		int midID = board.get(Board.toTileIndex(Board.middlePoint(startIndex, endIndex)));
+		int midID = board.get(Board.middleIndex(startIndex, endIndex));
 		if (id == Board.INVALID || id == Board.EMPTY) {
 			return false;
 		} else if (midID == Board.INVALID || midID == Board.EMPTY) {
@@ -6,8 +6,6 @@
 package ai;
 
 import java.awt.Point;
-import java.util.ArrayList;
-import java.util.List;
 
 import model.Board;
 import model.Game;
@@ -29,7 +27,7 @@ public class MoveLogic {
 	 */
 	public static boolean isValidMove(Game game,
 			int startIndex, int endIndex) {
-		return game != null && isValidMove(game.getBoard(),
+		return game != null && isValidMove(game.getBoardReference(),
 				game.isP1Turn(), startIndex, endIndex, game.getSkipIndex());
 	}
 	
@@ -95,8 +93,7 @@ public class MoveLogic {
 		}
 		
 		// Check the middle
-		Point middle = Board.middlePoint(startIndex, endIndex);
-		int midID = board.get(Board.toTileIndex(middle));
+		int midID = board.get(Board.middleIndex(startIndex, endIndex));
 		if (midID != Board.INVALID && ((!isP1Turn &&
 				midID != Board.BLACK_CHECKER && midID != Board.BLACK_KING) ||
 				(isP1Turn && midID != Board.WHITE_CHECKER &&
@@ -123,10 +120,8 @@ public class MoveLogic {
 			int startIndex, int endIndex) {
 		
 		// Check that it was a diagonal move
-		Point start = Board.toPoint(startIndex);
-		Point end = Board.toPoint(endIndex);
-		int dx = end.x - start.x;
-		int dy = end.y - start.y;
+		int dx = Board.getX(endIndex) - Board.getX(startIndex);
+		int dy = Board.getY(endIndex) - Board.getY(startIndex);
 		if (Math.abs(dx) != Math.abs(dy) || Math.abs(dx) > 2 || dx == 0) {
 			return false;
 		}
@@ -139,27 +134,9 @@ public class MoveLogic {
 		}
 		
 		// Check that if this is not a skip, there are none available
-		Point middle = Board.middlePoint(startIndex, endIndex);
-		int midID = board.get(Board.toTileIndex(middle));
-		if (midID < 0) {
-			
-			// Get the correct checkers
-			List<Point> checkers;
-			if (isP1Turn) {
-				checkers = board.find(Board.BLACK_CHECKER);
-				checkers.addAll(board.find(Board.BLACK_KING));
-			} else {
-				checkers = board.find(Board.WHITE_CHECKER);
-				checkers.addAll(board.find(Board.WHITE_KING));
-			}
-			
-			// Check if any of them have a skip available
-			for (Point p : checkers) {
-				int index = Board.toTileIndex(p);
-				if (!MoveGenerator.getSkips(board, index).isEmpty()) {
-					return false;
-				}
-			}
+		int midID = board.get(Board.middleIndex(startIndex, endIndex));
+		if (midID < 0 && MoveGenerator.getJumpers(board, isP1Turn) != 0) {
+			return false;
 		}
 		
 		// Passed all tests
@@ -173,55 +150,38 @@ public class MoveLogic {
 	 * @param board		the current board state.
 	 * @param checker	the point where the test checker is located at.
 	 * @return true if and only if the checker at the point is safe.
+	 * @see {@link #isSafe(Board, int)}
 	 */
 	public static boolean isSafe(Board board, Point checker) {
-		
-		// Trivial cases
-		if (board == null || checker == null) {
+		if (checker == null) {
 			return true;
 		}
-		int index = Board.toTileIndex(checker);
-		if (index < 0) {
+		return isSafe(board, Board.toTileIndex(checker));
+	}
+	
+	/**
+	 * Checks if the specified checker is safe (i.e. the opponent cannot skip
+	 * the checker).
+	 * 
+	 * @param board	the current board state.
+	 * @param index	the index of the tile the test checker is located at.
+	 * @return true if and only if the checker at the index is safe.
+	 * @see {@link #isSafe(Board, Point)},
+	 * {@link MoveGenerator#getThreatened(Board, boolean)}
+	 */
+	public static boolean isSafe(Board board, int index) {
+		
+		// Trivial cases
+		if (board == null || !Board.isValidTileIndex(index)) {
 			return true;
 		}
-		int id = board.get(index);
-		if (id == Board.EMPTY) {
+		int checker = 1 << index;
+		if ((board.getOccupiedMask() & checker) == 0) {
 			return true;
 		}
 		
 		// Determine if it can be skipped
-		boolean isBlack = (id == Board.BLACK_CHECKER || id == Board.BLACK_KING);
-		List<Point> check = new ArrayList<>();
-		MoveGenerator.addPoints(check, checker, Board.BLACK_KING, 1);
-		for (Point p : check) {
-			int start = Board.toTileIndex(p);
-			int tid = board.get(start);
-			
-			// Nothing here
-			if (tid == Board.EMPTY || tid == Board.INVALID) {
-				continue;
-			}
-			
-			// Check ID
-			boolean isWhite = (tid == Board.WHITE_CHECKER ||
-					tid == Board.WHITE_KING);
-			if (isBlack && !isWhite) {
-				continue;
-			}
-			boolean isKing = tid == Board.BLACK_KING;
-			
-			// Determine if valid skip direction
-			int dx = (checker.x - p.x) * 2;
-			int dy = (checker.y - p.y) * 2;
-			if (!isKing && (isWhite ^ (dy < 0))) {
-				continue;
-			}
-			int endIndex = Board.toTileIndex(new Point(p.x + dx, p.y + dy));
-			if (MoveGenerator.isValidSkip(board, start, endIndex)) {
-				return false;
-			}
-		}
-		
-		return true;
+		boolean isBlack = (board.getBlackMask() & checker) != 0;
+		return (MoveGenerator.getThreatened(board, isBlack) & checker) == 0;
 	}
 }
@@ -0,0 +1,173 @@
+/* Description: This class decides the order the turns of a position are
+ * searched in, so that the alpha-beta search finds cutoffs early.
+ */
+
+package ai;
+
+import model.Board;
+import model.Game;
+
+/**
+ * The {@code MovePicker} class hands out the turns of a position one at a
+ * time, best first, in stages:
+ * <ol>
+ * <li>the move stored in the transposition table,</li>
+ * <li>skips, taking the most checkers first,</li>
+ * <li>killer moves: quiet moves that caused a cutoff at the same ply in
+ * another position,</li>
+ * <li>the remaining quiet moves, by their history score and then forcing
+ * moves (moves that leave the moved checker where it can be skipped) first.
+ * </li>
+ * </ol>
+ * Skips are mandatory, so a position either has only skips or only quiet
+ * moves, and the stages after the first depend on which it is. Each turn is
+ * given a score for its stage, and the best remaining turn is only found when
+ * it is asked for, so the turns after a cutoff are never sorted.
+ * <p>
+ * The history table is indexed by [side][start][end] and is filled in by
+ * {@link Search} when a quiet move causes a cutoff.
+ */
+class MovePicker {
+	
+	/** The score of the move from the transposition table. */
+	private static final int TABLE_MOVE = Integer.MAX_VALUE;
+	
+	/** The score of a skip, plus the number of checkers captured. */
+	private static final int SKIP = 1 << 30;
+	
+	/** The score of the first killer move (the second is one less). */
+	private static final int KILLER = 1 << 29;
+	
+	/** The score added to a quiet move that forces the opponent to skip. */
+	private static final int FORCING = 1;
+	
+	/** The maximum history score, which keeps quiet moves below killers. */
+	static final int MAX_HISTORY = 1 << 27;
+	
+	/** The turns being handed out. */
+	private long[] list;
+	
+	/** The score of each turn. */
+	private final int[] scores = new int[MoveGenerator.MAX_TURNS];
+	
+	/** The number of turns. */
+	private int n;
+	
+	/** The number of turns already handed out. */
+	private int index;
+	
+	/**
+	 * Scores the turns of a position, so they can be handed out.
+	 * 
+	 * @param game		the position the turns are for.
+	 * @param list		the turns from {@link MoveGenerator#getTurns(Game,
+	 * long[])}, which will be reordered.
+	 * @param n			the number of turns.
+	 * @param tableMove	the move stored in the transposition table (see
+	 * {@link Search}), or -1 if there is none.
+	 * @param killers	the killer moves for the ply, as table moves.
+	 * @param history	the history table.
+	 */
+	void init(Game game, long[] list, int n, int tableMove, int[] killers,
+			int[] history) {
+		this.list = list;
+		this.n = n;
+		this.index = 0;
+		
+		// The board before the move, to find forcing moves
+		Board board = game.getBoardReference();
+		boolean isBlack = game.isP1Turn();
+		int occupied = board.getOccupiedMask();
+		int opponent = isBlack ? board.getWhiteMask() : board.getBlackMask();
+		int side = isBlack ? 0 : 1;
+		
+		// Score each turn for its stage
+		for (int i = 0; i < n; i ++) {
+			long move = list[i];
+			int start = MoveGenerator.getTurnStart(move);
+			int end = MoveGenerator.getTurnEnd(move);
+			int captured = MoveGenerator.getCaptured(move);
+			int tiles = Search.toTableMove(move);
+			if (tiles == tableMove) {
+				scores[i] = TABLE_MOVE;
+			} else if (captured != 0) {
+				scores[i] = SKIP + Integer.bitCount(captured);
+			} else if (tiles == killers[0]) {
+				scores[i] = KILLER;
+			} else if (tiles == killers[1]) {
+				scores[i] = KILLER - 1;
+			} else {
+				int empty = ~((occupied & ~(1 << start)) | (1 << end));
+				boolean forcing = MoveGenerator.getThreatened(1 << end,
+						opponent, board.getKingMask(), empty, isBlack) != 0;
+				scores[i] = (history[getHistoryIndex(side, start, end)] << 1)
+						+ (forcing ? FORCING : 0);
+			}
+		}
+	}
+	
+	/**
+	 * Gets the best turn that has not been handed out yet.
+	 * 
+	 * @return the packed turn, or {@link Search#NO_MOVE} if every turn was
+	 * handed out.
+	 */
+	long next() {
+		
+		// No turns left
+		if (index >= n) {
+			return Search.NO_MOVE;
+		}
+		
+		// Find the best remaining turn (the first of equal turns)
+		int best = index;
+		for (int i = index + 1; i < n; i ++) {
+			if (scores[i] > scores[best]) {
+				best = i;
+			}
+		}
+		
+		// Move it in front of the remaining turns
+		long move = list[best];
+		int score = scores[best];
+		System.arraycopy(list, index, list, index + 1, best - index);
+		System.arraycopy(scores, index, scores, index + 1, best - index);
+		list[index] = move;
+		scores[index ++] = score;
+		
+		return move;
+	}
+	
+	/**
+	 * Checks if the last turn handed out is a quiet move that nothing
+	 * suggests is good, i.e. it is not a skip, the table move, a killer or a
+	 * forcing move. These are the moves the search may reduce or prune.
+	 * 
+	 * @return true if the last turn is a plain quiet move.
+	 */
+	boolean isQuiet() {
+		int score = scores[index - 1];
+		return score < KILLER - 1 && (score & FORCING) == 0;
+	}
+	
+	/**
+	 * Gets the number of turns handed out so far.
+	 * 
+	 * @return the number of turns.
+	 */
+	int getCount() {
+		return index;
+	}
+	
+	/**
+	 * Gets the position of a move in the history table.
+	 * 
+	 * @param side	0 for black, 1 for white.
+	 * @param start	the start index of the move.
+	 * @param end	the end index of the move.
+	 * @return the index into the history table.
+	 */
+	static int getHistoryIndex(int side, int start, int end) {
+		return (side << 10) | (start << 5) | end;
+	}
+}
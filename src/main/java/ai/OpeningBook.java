@@ -0,0 +1,226 @@
+/* Description: This class looks up the statistics of opening positions in an
+ * opening book file and chooses book moves.
+ */
+
+package ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import model.Board;
+import model.Game;
+
+/**
+ * The {@code OpeningBook} class holds the number of games won, drawn and lost
+ * from positions reached in recorded games, and chooses the move that scored
+ * best from a position without searching.
+ * <p>
+ * A position is found by its key, the {@link Board#getHash()} of the
+ * position with black to move. A position with white to move is turned
+ * around and the colors swapped first (see {@link Tablebase#flip(int)}), so
+ * a position and its mirror share an entry and the statistics are always for
+ * the player to move. This halves the size of a book built from games
+ * played from both sides.
+ * <p>
+ * The file starts with a header of {@link #HEADER_SIZE} bytes (the magic
+ * number, the number of entries and the number of turns of each game that
+ * were added, as big-endian ints), followed by the entries sorted by key.
+ * Each entry is {@link #ENTRY_SIZE} bytes: the key as a big-endian long, then
+ * the wins, draws and losses of the player to move as big-endian ints. The
+ * file is memory-mapped and searched in place, so opening a book is instant
+ * and only the pages looked at are read. A book can be shared by several
+ * threads.
+ */
+public class OpeningBook {
+	
+	/** The number that starts every file ("ACOB"). */
+	public static final int MAGIC = 0x41434F42;
+	
+	/** The number of bytes in the header of a file, before the entries. */
+	public static final int HEADER_SIZE = 12;
+	
+	/** The number of bytes in each entry. */
+	public static final int ENTRY_SIZE = 20;
+	
+	/** The number of games a move needs to be played from the book. */
+	public static final int DEFAULT_MIN_GAMES = 4;
+	
+	/** The contents of the file. */
+	private final ByteBuffer data;
+	
+	/** The number of entries in the file. */
+	private final int size;
+	
+	/** The number of turns of each game that were added to the book. */
+	private final int plies;
+	
+	/** The number of games a move needs to be played. */
+	private int minGames = DEFAULT_MIN_GAMES;
+	
+	/**
+	 * Opens a book file.
+	 * 
+	 * @param file	the file written by the book builder.
+	 * @throws IOException if the file cannot be read or is not a book.
+	 */
+	public OpeningBook(File file) throws IOException {
+		try (RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel()) {
+			this.data = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size());
+		}
+		if (data.limit() < HEADER_SIZE || data.getInt(0) != MAGIC) {
+			throw new IOException("not an opening book: " + file);
+		}
+		this.size = data.getInt(4);
+		this.plies = data.getInt(8);
+		if (data.limit() < HEADER_SIZE + (long) size * ENTRY_SIZE) {
+			throw new IOException("truncated opening book: " + file);
+		}
+	}
+	
+	/**
+	 * Gets the key a position is stored under.
+	 * 
+	 * @param board		the board.
+	 * @param isBlack	the flag indicating if black is to move.
+	 * @return the hash of the position with black to move.
+	 */
+	public static long getKey(Board board, boolean isBlack) {
+		if (isBlack) {
+			return board.getHash();
+		}
+		return Board.fromMasks(Tablebase.flip(board.getWhiteMask()),
+				Tablebase.flip(board.getBlackMask()),
+				Tablebase.flip(board.getKingMask())).getHash();
+	}
+	
+	/**
+	 * Finds the entry of a position with a binary search.
+	 * 
+	 * @param key	the key of the position.
+	 * @return the offset of the entry in the file, or -1 if it is not in the
+	 * book.
+	 */
+	private int find(long key) {
+		int low = 0, high = size - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int offset = HEADER_SIZE + mid * ENTRY_SIZE;
+			long k = data.getLong(offset);
+			if (k < key) {
+				low = mid + 1;
+			} else if (k > key) {
+				high = mid - 1;
+			} else {
+				return offset;
+			}
+		}
+		return -1;
+	}
+	
+	/**
+	 * Looks up the statistics of a position.
+	 * 
+	 * @param board		the board.
+	 * @param isBlack	the flag indicating if black is to move.
+	 * @param stats		the array to store the wins, draws and losses of the
+	 * player to move in.
+	 * @return true if the position is in the book.
+	 */
+	public boolean probe(Board board, boolean isBlack, int[] stats) {
+		int offset = find(getKey(board, isBlack));
+		if (offset < 0) {
+			return false;
+		}
+		stats[0] = data.getInt(offset + 8);
+		stats[1] = data.getInt(offset + 12);
+		stats[2] = data.getInt(offset + 16);
+		return true;
+	}
+	
+	/**
+	 * Chooses the book move in a game: the turn that leads to the position
+	 * with the best score for the current player (a win is 1 point and a
+	 * draw half a point, averaged over the games played from it). Turns
+	 * played in fewer than {@link #getMinGames()} games are ignored, and ties
+	 * go to the turn played most. The game is not modified.
+	 * 
+	 * @param game	the game.
+	 * @return the packed turn, or {@link Search#NO_MOVE} if the position is
+	 * out of the book.
+	 */
+	public long getMove(Game game) {
+		
+		// Only whole turns are in the book
+		if (game == null || game.getSkipIndex() >= 0) {
+			return Search.NO_MOVE;
+		}
+		
+		// Score the position after each turn
+		long[] turns = new long[MoveGenerator.MAX_TURNS];
+		int n = MoveGenerator.getTurns(game, turns);
+		Game copy = game.copy();
+		int[] stats = new int[3];
+		long best = Search.NO_MOVE;
+		double bestScore = -1;
+		int bestGames = 0;
+		for (int i = 0; i < n; i ++) {
+			copy.applyTurn(turns[i]);
+			boolean found = probe(copy.getBoardReference(), copy.isP1Turn(),
+					stats);
+			copy.unmakeMove();
+			int games = stats[0] + stats[1] + stats[2];
+			if (!found || games < minGames) {
+				continue;
+			}
+			
+			// The statistics are for the opponent
+			double score = (stats[2] + stats[1] * 0.5) / games;
+			if (score > bestScore || (score == bestScore && games > bestGames)) {
+				best = turns[i];
+				bestScore = score;
+				bestGames = games;
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Sets the number of games a turn needs to be played from the book, so
+	 * a turn that happened to win the few games it was played in is not
+	 * trusted.
+	 * 
+	 * @param minGames	the number of games (at least 1).
+	 */
+	public void setMinGames(int minGames) {
+		this.minGames = Math.max(1, minGames);
+	}
+	
+	public int getMinGames() {
+		return minGames;
+	}
+	
+	/**
+	 * Gets the number of positions in the book.
+	 * 
+	 * @return the number of entries.
+	 */
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * Gets the number of turns from the start of each game that were added
+	 * to the book. Positions later in a game are never found.
+	 * 
+	 * @return the number of turns.
+	 */
+	public int getPlies() {
+		return plies;
+	}
+}
@@ -0,0 +1,890 @@
+/* Description: This class searches the game tree with negamax and alpha-beta
+ * pruning to find the best move for the current player, deepening the search
+ * until a depth or time limit is reached.
+ */
+
+package ai;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import model.Board;
+import model.Game;
+
+/**
+ * The {@code Search} class implements a fixed depth negamax search with
+ * alpha-beta pruning. Each move searched is a complete turn from
+ * {@link MoveGenerator#getTurns(Game, long[])}, so a multiple skip is a single
+ * node and the depth is measured in turns. Leaf positions are scored by
+ * {@link ComputerPlayer#evaluate(Board, boolean)}, kept up to date as turns
+ * are made and taken back by an {@link Evaluation}. A leaf where the current
+ * player has to skip is not scored until the skips are played out (a
+ * quiescence search), so an exchange is never cut off half way.
+ * <p>
+ * The search is iterative deepening: it searches depth 1, then 2, and so on,
+ * trying the best move of the last iteration first. If a time limit is given,
+ * the search stops as soon as the deadline passes and keeps the best move of
+ * the deepest iteration that finished, so a move is always available.
+ * <p>
+ * Results are kept in a {@link TranspositionTable}, so positions reached
+ * by different move orders are not searched again and the best move stored
+ * for a position is tried first. The other moves are ordered by a
+ * {@link MovePicker}, using killer moves and a history table learned from the
+ * cutoffs of the search ({@link #getFirstCutoffRate()} shows how well this
+ * works).
+ * <p>
+ * The search can use several threads (see {@link #setThreads(int)}). The
+ * extra threads search the same root position at the same time and share
+ * the transposition table, which lets each thread skip work already done by
+ * the others (lazy SMP). Every other helper searches one turn deeper, so the
+ * threads spread out over the tree. The move played is the one found by the
+ * calling thread.
+ * <p>
+ * Close to the leaves the search can be made selective: late quiet moves
+ * can be reduced, and hopeless quiet moves and positions pruned using
+ * margins based on the material weight of a checker. These are off by
+ * default, since with the current margins they lose more good moves than
+ * the depth they gain makes up for. Each can be switched on (e.g.
+ * {@link #setReductions(boolean)}), and a node limit
+ * ({@link #setNodeLimit(long)}) allows them to be compared at a fixed amount
+ * of work.
+ * <p>
+ * With an endgame database (see {@link #setTablebase(TablebaseProber)}),
+ * every position found in it below the root has an exact score, so the
+ * search only looks for the fastest win or the slowest loss there.
+ * <p>
+ * Moves are packed turns from {@link MoveGenerator}. A search instance
+ * keeps its move buffers between searches and must only be used by one
+ * caller at a time.
+ */
+public class Search {
+	
+	/** The score of a won game, minus the number of plies to reach it. */
+	public static final int WIN_SCORE = 8000;
+	
+	/** A score greater than any score the search can return. */
+	public static final int INFINITY = WIN_SCORE + 1;
+	
+	/** The value of the best move when there is no move available. */
+	public static final long NO_MOVE = -1;
+	
+	/** The maximum number of plies the search will go. */
+	public static final int MAX_PLY = 128;
+	
+	/**
+	 * The score of a win found in an endgame database without distances.
+	 * It is below the scores of wins found by the search, and the evaluation
+	 * is added to it so the search still makes progress towards the win.
+	 */
+	private static final int KNOWN_WIN_SCORE = WIN_SCORE / 2;
+	
+	/** The number of nodes visited between checks of the clock. */
+	private static final int CHECK_INTERVAL = 256;
+	
+	/** The number of moves searched at full depth before others are reduced. */
+	private static final int FULL_DEPTH_MOVES = 2;
+	
+	/** The minimum remaining depth for a move to be reduced. */
+	private static final int REDUCTION_DEPTH = 2;
+	
+	/**
+	 * The most a quiet move is expected to gain one turn before a leaf, used
+	 * for futility pruning.
+	 */
+	private static final int FUTILITY_MARGIN = (int) ComputerPlayer.CHECKER;
+	
+	/** The deepest remaining depth that razoring is tried at. */
+	private static final int RAZOR_DEPTH = 2;
+	
+	/**
+	 * The margin below alpha, per turn of remaining depth, at which a quiet
+	 * position is razored.
+	 */
+	private static final int RAZOR_MARGIN = (int) (ComputerPlayer.CHECKER * 2);
+	
+	/** The turns generated at each ply. */
+	private final long[][] moves = new long[MAX_PLY][MoveGenerator.MAX_TURNS];
+	
+	/** The order turns are searched in at each ply. */
+	private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+	
+	/** The two most recent quiet moves that caused a cutoff at each ply. */
+	private final int[][] killers = new int[MAX_PLY][2];
+	
+	/** The history score of each quiet move, by [side][start][end]. */
+	private final int[] history = new int[2 << 10];
+	
+	/** The table of positions already searched. */
+	private final TranspositionTable table;
+	
+	/** The evaluation of the position being searched. */
+	private final Evaluation evaluation = new Evaluation();
+	
+	/** The searches run by the helper threads. */
+	private Search[] helpers = new Search[0];
+	
+	/** The threads that run the helper searches. */
+	private ExecutorService pool;
+	
+	/** The number of turns added to each iteration (used by helpers). */
+	private int depthOffset;
+	
+	/** The best move found by the last search. */
+	private long bestMove = NO_MOVE;
+	
+	/** The score of the best move found by the last search. */
+	private int bestScore;
+	
+	/** The number of positions visited by the last search. */
+	private long nodes;
+	
+	/** The number of cutoffs in the last search. */
+	private long cutoffs;
+	
+	/** The number of cutoffs caused by the first move searched. */
+	private long firstCutoffs;
+	
+	/** The deepest iteration that finished in the last search. */
+	private int depth;
+	
+	/** The time taken by the last search, in milliseconds. */
+	private long elapsed;
+	
+	/** The {@link System#nanoTime()} to stop at, or 0 if there is no limit. */
+	private long deadline;
+	
+	/** The flag indicating the current iteration ran out of time. */
+	private boolean aborted;
+	
+	/** The flag indicating the search was asked to stop. */
+	private volatile boolean stopped;
+	
+	/** The number of nodes to stop at, or 0 if there is no limit. */
+	private long nodeLimit;
+	
+	/** The flag indicating late quiet moves are searched less deeply. */
+	private boolean reductions;
+	
+	/** The flag indicating hopeless quiet moves next to a leaf are skipped. */
+	private boolean futility;
+	
+	/** The flag indicating hopeless quiet positions are cut short. */
+	private boolean razoring;
+	
+	/** The endgame database, or null if there is none. */
+	private TablebaseProber tablebase;
+	
+	public Search() {
+		this(TranspositionTable.DEFAULT_SIZE);
+	}
+	
+	/**
+	 * Creates a search with a transposition table of the specified size.
+	 * 
+	 * @param hashSize	the size of the transposition table in megabytes.
+	 */
+	public Search(int hashSize) {
+		this(new TranspositionTable(hashSize));
+	}
+	
+	/**
+	 * Creates a search that uses an existing transposition table.
+	 * 
+	 * @param table	the table to share.
+	 */
+	private Search(TranspositionTable table) {
+		this.table = table;
+		for (int i = 0; i < MAX_PLY; i ++) {
+			pickers[i] = new MovePicker();
+		}
+	}
+	
+	/**
+	 * Sets the number of threads used to search, including the calling
+	 * thread. The threads share the transposition table.
+	 * 
+	 * @param threads	the number of threads (at least 1).
+	 */
+	public void setThreads(int threads) {
+		
+		// Nothing to do
+		threads = Math.max(1, threads);
+		if (threads == getThreads()) {
+			return;
+		}
+		shutdown();
+		
+		// Create the helpers and their threads
+		this.helpers = new Search[threads - 1];
+		for (int i = 0; i < helpers.length; i ++) {
+			helpers[i] = new Search(table);
+			helpers[i].depthOffset = (i + 1) % 2;
+			helpers[i].tablebase = tablebase;
+		}
+		if (helpers.length > 0) {
+			this.pool = Executors.newFixedThreadPool(helpers.length, r -> {
+				Thread t = new Thread(r, "search-helper");
+				t.setDaemon(true);
+				return t;
+			});
+		}
+	}
+	
+	/**
+	 * Gets the number of threads used to search.
+	 * 
+	 * @return the number of threads, including the calling thread.
+	 */
+	public int getThreads() {
+		return helpers.length + 1;
+	}
+	
+	/**
+	 * Stops the helper threads. The search can still be used afterwards, but
+	 * only with a single thread.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdownNow();
+			this.pool = null;
+		}
+		this.helpers = new Search[0];
+	}
+	
+	/**
+	 * Asks a running search to stop as soon as possible. It returns the best
+	 * move of the deepest iteration that finished.
+	 */
+	public void stop() {
+		this.stopped = true;
+	}
+	
+	/**
+	 * Sets the number of nodes after which the search stops, as if it had
+	 * run out of time. Each thread counts its own nodes.
+	 * 
+	 * @param nodeLimit	the number of nodes, or 0 for no limit.
+	 */
+	public void setNodeLimit(long nodeLimit) {
+		this.nodeLimit = Math.max(0, nodeLimit);
+	}
+	
+	public long getNodeLimit() {
+		return nodeLimit;
+	}
+	
+	/**
+	 * Sets whether late quiet moves are searched one turn less deep (late
+	 * move reductions). A reduced move that raises alpha is searched again
+	 * at the full depth. Off by default.
+	 * 
+	 * @param reductions	true to reduce late moves.
+	 */
+	public void setReductions(boolean reductions) {
+		this.reductions = reductions;
+	}
+	
+	public boolean isReductions() {
+		return reductions;
+	}
+	
+	/**
+	 * Sets whether quiet moves one turn before a leaf are skipped when the
+	 * position is too far below alpha for them to matter (futility pruning).
+	 * Off by default.
+	 * 
+	 * @param futility	true to skip hopeless moves.
+	 */
+	public void setFutility(boolean futility) {
+		this.futility = futility;
+	}
+	
+	public boolean isFutility() {
+		return futility;
+	}
+	
+	/**
+	 * Sets whether quiet positions close to the leaves are scored without
+	 * searching when they are far below alpha (razoring). Off by default.
+	 * 
+	 * @param razoring	true to cut hopeless positions short.
+	 */
+	public void setRazoring(boolean razoring) {
+		this.razoring = razoring;
+	}
+	
+	public boolean isRazoring() {
+		return razoring;
+	}
+	
+	/**
+	 * Sets the endgame database to look positions up in. A position found
+	 * in it is not searched, at any depth, and scores as a win or loss in
+	 * the number of turns stored (or as a draw). The database can be shared
+	 * with other searches.
+	 * 
+	 * @param tablebase	the database, or null to search every position.
+	 */
+	public void setTablebase(TablebaseProber tablebase) {
+		this.tablebase = tablebase;
+		for (int i = 0; i < helpers.length; i ++) {
+			helpers[i].tablebase = tablebase;
+		}
+	}
+	
+	public TablebaseProber getTablebase() {
+		return tablebase;
+	}
+	
+	/**
+	 * Removes every result stored by previous searches.
+	 */
+	public void clear() {
+		table.clear();
+	}
+	
+	/**
+	 * Searches the game to the specified depth and finds the best move for
+	 * the current player. The game is not modified.
+	 * 
+	 * @param game	the game to search.
+	 * @param depth	the number of turns to look ahead (at least 1).
+	 * @return the best packed turn, or {@link #NO_MOVE} if there are no moves.
+	 * @see {@link #search(Game, int, long)}, {@link #getBestScore()}
+	 */
+	public long search(Game game, int depth) {
+		return search(game, depth, 0);
+	}
+	
+	/**
+	 * Searches the game with iterative deepening until the maximum depth is
+	 * reached or the time limit has passed, and finds the best move for the
+	 * current player. The game is not modified.
+	 * 
+	 * @param game		the game to search.
+	 * @param maxDepth	the maximum number of turns to look ahead.
+	 * @param timeLimit	the time limit in milliseconds, or 0 for no limit.
+	 * @return the best packed turn, or {@link #NO_MOVE} if there are no moves.
+	 * @see {@link #getDepth()}, {@link #getBestScore()}
+	 */
+	public long search(Game game, int maxDepth, long timeLimit) {
+		
+		long start = System.nanoTime();
+		this.stopped = false;
+		this.deadline = (timeLimit > 0) ? start + timeLimit * 1000000 : 0;
+		
+		// Start the helpers on their own copies of the game
+		Future<?>[] tasks = new Future<?>[helpers.length];
+		for (int i = 0; i < helpers.length && game != null; i ++) {
+			final Search helper = helpers[i];
+			final Game copy = game.copy();
+			final int depth = maxDepth;
+			helper.stopped = false;
+			helper.deadline = deadline;
+			helper.nodeLimit = nodeLimit;
+			helper.reductions = reductions;
+			helper.futility = futility;
+			helper.razoring = razoring;
+			tasks[i] = pool.submit(() -> helper.iterate(copy, depth));
+		}
+		
+		// Search on this thread, then stop the helpers
+		iterate((game == null) ? null : game.copy(), maxDepth);
+		for (int i = 0; i < helpers.length; i ++) {
+			helpers[i].stop();
+		}
+		for (int i = 0; i < tasks.length; i ++) {
+			if (tasks[i] == null) {
+				continue;
+			}
+			try {
+				tasks[i].get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			} catch (ExecutionException e) {
+				throw new IllegalStateException(e.getCause());
+			}
+			this.nodes += helpers[i].nodes;
+			this.cutoffs += helpers[i].cutoffs;
+			this.firstCutoffs += helpers[i].firstCutoffs;
+		}
+		this.elapsed = (System.nanoTime() - start) / 1000000;
+		
+		return bestMove;
+	}
+	
+	/**
+	 * Runs the iterative deepening loop on the current thread, until the
+	 * maximum depth is reached, the deadline passes or the search is stopped.
+	 * 
+	 * @param game		the game to search.
+	 * @param maxDepth	the maximum number of turns to look ahead.
+	 */
+	private void iterate(Game game, int maxDepth) {
+		
+		this.nodes = 0;
+		this.cutoffs = 0;
+		this.firstCutoffs = 0;
+		this.depth = 0;
+		this.elapsed = 0;
+		this.aborted = false;
+		this.bestMove = NO_MOVE;
+		this.bestScore = -INFINITY;
+		if (game == null) {
+			return;
+		}
+		evaluation.reset(game.getBoardReference());
+		
+		// Forget the killers, and keep only half of the old history so the
+		// new position soon takes over
+		for (int i = 0; i < MAX_PLY; i ++) {
+			killers[i][0] = killers[i][1] = -1;
+		}
+		for (int i = 0; i < history.length; i ++) {
+			history[i] >>= 1;
+		}
+		
+		// Any legal move is better than none if time runs out immediately
+		long[] rootMoves = moves[0];
+		int n = MoveGenerator.getTurns(game, rootMoves);
+		if (n == 0) {
+			return;
+		}
+		this.bestMove = rootMoves[0];
+		
+		// Deepen until out of depth or time
+		maxDepth = Math.max(maxDepth, 1);
+		for (int d = 1; d <= maxDepth; d ++) {
+			int best = searchRoot(game, rootMoves, n,
+					Math.min(d + depthOffset, maxDepth));
+			if (aborted) {
+				break;
+			}
+			this.depth = d;
+			this.bestMove = rootMoves[best];
+			
+			// Try the best move first in the next iteration
+			System.arraycopy(rootMoves, 0, rootMoves, 1, best);
+			rootMoves[0] = bestMove;
+			
+			// Nothing more to learn once a win or loss is certain
+			if (Math.abs(bestScore) >= WIN_SCORE - MAX_PLY) {
+				break;
+			}
+		}
+	}
+	
+	/**
+	 * Searches each root move to a fixed depth.
+	 * 
+	 * @param game		the game to search.
+	 * @param rootMoves	the moves available at the root.
+	 * @param n			the number of root moves.
+	 * @param depth		the number of turns to look ahead.
+	 * @return the index of the best root move, only valid if the search was
+	 * not aborted.
+	 */
+	private int searchRoot(Game game, long[] rootMoves, int n, int depth) {
+		
+		// Search each root move, raising alpha as better moves are found
+		int best = 0, bestScore = -INFINITY;
+		int alpha = -INFINITY, beta = INFINITY;
+		for (int i = 0; i < n && !aborted; i ++) {
+			int score = searchMove(game, rootMoves[i], depth, alpha, beta, 0);
+			if (score > bestScore && !aborted) {
+				bestScore = score;
+				best = i;
+				alpha = Math.max(alpha, score);
+			}
+		}
+		if (!aborted) {
+			this.bestScore = bestScore;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Makes a turn, searches the resulting position and takes the turn back.
+	 * 
+	 * @param game	the game before the turn.
+	 * @param move	the packed turn to make.
+	 * @param depth	the remaining depth before the turn.
+	 * @param alpha	the lower bound of the search window.
+	 * @param beta	the upper bound of the search window.
+	 * @param ply	the distance from the root before the turn.
+	 * @return the score of the turn for the player making it.
+	 */
+	private int searchMove(Game game, long move, int depth, int alpha,
+			int beta, int ply) {
+		game.applyTurn(move);
+		evaluation.makeMove(game.getBoardReference(),
+				(1 << MoveGenerator.getTurnStart(move))
+				| (1 << MoveGenerator.getTurnEnd(move))
+				| MoveGenerator.getCaptured(move));
+		int score = -negamax(game, depth - 1, -beta, -alpha, ply + 1);
+		game.unmakeMove();
+		evaluation.unmakeMove();
+		return score;
+	}
+	
+	/**
+	 * Scores a position from the point of view of the current player.
+	 * 
+	 * @param game	the position to score.
+	 * @param depth	the remaining number of turns to search.
+	 * @param alpha	the lower bound of the search window.
+	 * @param beta	the upper bound of the search window.
+	 * @param ply	the distance from the root.
+	 * @return the score of the position.
+	 */
+	private int negamax(Game game, int depth, int alpha, int beta, int ply) {
+		
+		// Stop if out of time or nodes, or asked to
+		if ((++ nodes & (CHECK_INTERVAL - 1)) == 0 && (stopped
+				|| (deadline != 0 && System.nanoTime() - deadline >= 0)
+				|| (nodeLimit != 0 && nodes >= nodeLimit))) {
+			aborted = true;
+		}
+		if (aborted) {
+			return 0;
+		}
+		
+		// No moves means the current player has lost
+		long[] list = moves[Math.min(ply, MAX_PLY - 1)];
+		int n = MoveGenerator.getTurns(game, list);
+		if (n == 0) {
+			return -WIN_SCORE + ply;
+		}
+		
+		// The result of an endgame in the database is already known
+		if (tablebase != null) {
+			short value = tablebase.probe(game.getBoardReference(),
+					game.isP1Turn());
+			if (value != TablebaseProber.NOT_FOUND) {
+				int result = Tablebase.getResult(value);
+				if (result == Tablebase.DRAW) {
+					return 0;
+				} else if (result != Tablebase.INVALID) {
+					return getTablebaseScore(game, result,
+							Tablebase.getDistance(value), ply);
+				}
+			}
+		}
+		
+		// Leaf position, unless a skip must be made
+		if (depth <= 0 || ply >= MAX_PLY - 1) {
+			return quiesce(game, list, n, alpha, beta, ply);
+		}
+		
+		// Use the stored result if it was searched deep enough
+		long key = game.getHash();
+		int entry = table.probe(key);
+		int tableMove = -1;
+		if (entry != TranspositionTable.MISS) {
+			if (TranspositionTable.getDepth(entry) >= depth) {
+				int score = fromTable(TranspositionTable.getScore(entry), ply);
+				int bound = TranspositionTable.getBound(entry);
+				if (bound == TranspositionTable.EXACT
+						|| (bound == TranspositionTable.LOWER && score >= beta)
+						|| (bound == TranspositionTable.UPPER && score <= alpha)) {
+					return score;
+				}
+			}
+			tableMove = TranspositionTable.getMove(entry);
+		}
+		
+		// Near the leaves, a quiet position far below alpha is not searched
+		// any further (razoring), and quiet moves that cannot raise the score
+		// to alpha are skipped (futility pruning). Neither is done when a win
+		// or loss has been found, as the margins mean nothing there.
+		boolean quiet = MoveGenerator.getCaptured(list[0]) == 0
+				&& Math.abs(alpha) < WIN_SCORE - MAX_PLY
+				&& Math.abs(beta) < WIN_SCORE - MAX_PLY;
+		int staticScore = quiet ? evaluation.evaluate(game.isP1Turn()) : 0;
+		if (razoring && quiet && depth <= RAZOR_DEPTH
+				&& staticScore + RAZOR_MARGIN * depth <= alpha) {
+			return staticScore;
+		}
+		boolean prune = futility && quiet && depth == 1
+				&& staticScore + FUTILITY_MARGIN <= alpha;
+		
+		// Search each move, best first
+		MovePicker picker = pickers[ply];
+		picker.init(game, list, n, tableMove, killers[ply], history);
+		int alphaStart = alpha;
+		int best = -INFINITY;
+		long bestMove = 0;
+		for (long move; !aborted && (move = picker.next()) != NO_MOVE; ) {
+			
+			// Skip a hopeless quiet move, keeping the best it could score
+			int count = picker.getCount();
+			if (prune && count > 1 && picker.isQuiet()) {
+				best = Math.max(best, staticScore + FUTILITY_MARGIN);
+				continue;
+			}
+			
+			// Search a late quiet move one turn less deep, and again at the
+			// full depth if it turns out to raise alpha
+			int score;
+			if (reductions && quiet && depth >= REDUCTION_DEPTH
+					&& count > FULL_DEPTH_MOVES && picker.isQuiet()) {
+				score = searchMove(game, move, depth - 1, alpha, beta, ply);
+				if (score > alpha) {
+					score = searchMove(game, move, depth, alpha, beta, ply);
+				}
+			} else {
+				score = searchMove(game, move, depth, alpha, beta, ply);
+			}
+			if (score > best) {
+				best = score;
+				bestMove = move;
+				if (score > alpha) {
+					alpha = score;
+					if (alpha >= beta) {
+						updateOrdering(game, move, depth, ply,
+								picker.getCount() == 1);
+						break;
+					}
+				}
+			}
+		}
+		
+		// Store the result
+		if (!aborted) {
+			int bound = (best <= alphaStart) ? TranspositionTable.UPPER
+					: (best >= beta) ? TranspositionTable.LOWER
+					: TranspositionTable.EXACT;
+			table.store(key, depth, bound, toTable(best, ply),
+					toTableMove(bestMove));
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Converts a win or loss from the endgame database to a score. A
+	 * distance is scored like a win or loss found by the search at that
+	 * distance (up to the maximum ply). A database without distances only
+	 * tells the position is won, so the evaluation is used to find a way to
+	 * win it.
+	 * 
+	 * @param game		the position.
+	 * @param result	the result for the current player.
+	 * @param distance	the number of turns until the game ends, or 0 if not
+	 * known.
+	 * @param ply		the distance from the root.
+	 * @return the score of the position.
+	 */
+	private int getTablebaseScore(Game game, int result, int distance,
+			int ply) {
+		int sign = (result == Tablebase.WIN) ? 1 : -1;
+		if (distance == 0) {
+			return sign * KNOWN_WIN_SCORE
+					+ evaluation.evaluate(game.isP1Turn());
+		}
+		return sign * (WIN_SCORE - Math.min(ply + distance, MAX_PLY - 1));
+	}
+	
+	/**
+	 * Remembers a move that caused a cutoff, so it is tried earlier in
+	 * other positions. Skips are not remembered, as they are always tried
+	 * first anyway.
+	 * 
+	 * @param game		the position the move was made in.
+	 * @param move		the packed turn that caused the cutoff.
+	 * @param depth		the remaining depth of the position.
+	 * @param ply		the distance from the root.
+	 * @param isFirst	the flag indicating the move was the first searched.
+	 */
+	private void updateOrdering(Game game, long move, int depth, int ply,
+			boolean isFirst) {
+		
+		this.cutoffs ++;
+		if (isFirst) {
+			this.firstCutoffs ++;
+		}
+		if (MoveGenerator.getCaptured(move) != 0) {
+			return;
+		}
+		
+		// Keep the two most recent killers
+		int tableMove = toTableMove(move);
+		int[] killers = this.killers[ply];
+		if (killers[0] != tableMove) {
+			killers[1] = killers[0];
+			killers[0] = tableMove;
+		}
+		
+		// Deeper cutoffs count for more, and every score is halved once one
+		// gets too large
+		int i = MovePicker.getHistoryIndex(game.isP1Turn() ? 0 : 1,
+				MoveGenerator.getTurnStart(move), MoveGenerator.getTurnEnd(move));
+		history[i] += depth * depth;
+		if (history[i] >= MovePicker.MAX_HISTORY) {
+			for (int j = 0; j < history.length; j ++) {
+				history[j] >>= 1;
+			}
+		}
+	}
+	
+	/**
+	 * Scores a position at the end of the search. If the current player has
+	 * to skip, the position is not quiet (a checker is about to be lost), so
+	 * the skips are searched until a position without skips is reached. As
+	 * skips are mandatory, there is no choice to stop early and only these
+	 * forced lines are extended.
+	 * 
+	 * @param game	the position to score.
+	 * @param list	the turns available in the position.
+	 * @param n		the number of turns available (at least 1).
+	 * @param alpha	the lower bound of the search window.
+	 * @param beta	the upper bound of the search window.
+	 * @param ply	the distance from the root.
+	 * @return the score of the position.
+	 */
+	private int quiesce(Game game, long[] list, int n, int alpha, int beta,
+			int ply) {
+		
+		// Quiet position
+		if (MoveGenerator.getCaptured(list[0]) == 0 || ply >= MAX_PLY - 1) {
+			assert evaluation.evaluate(game.isP1Turn()) == ComputerPlayer
+					.evaluate(game.getBoardReference(), game.isP1Turn());
+			return evaluation.evaluate(game.isP1Turn());
+		}
+		
+		// Search each skip
+		int best = -INFINITY;
+		for (int i = 0; i < n && !aborted; i ++) {
+			int score = searchMove(game, list[i], 0, alpha, beta, ply);
+			if (score > best) {
+				best = score;
+				if (score > alpha) {
+					alpha = score;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Converts a turn to the move stored in the transposition table, which
+	 * only keeps the start and end index. Two turns with the same start and
+	 * end are rare and only affect the order moves are tried in.
+	 * 
+	 * @param turn	the packed turn.
+	 * @return the move to store.
+	 */
+	static int toTableMove(long turn) {
+		return MoveGenerator.getTurnStart(turn)
+				| (MoveGenerator.getTurnEnd(turn) << 5);
+	}
+	
+	/**
+	 * Converts a score to be stored in the transposition table. Win and loss
+	 * scores are stored relative to the position rather than the root.
+	 * 
+	 * @param score	the score relative to the root.
+	 * @param ply	the distance from the root.
+	 * @return the score to store.
+	 */
+	private static int toTable(int score, int ply) {
+		if (score >= WIN_SCORE - MAX_PLY) {
+			return score + ply;
+		} else if (score <= -WIN_SCORE + MAX_PLY) {
+			return score - ply;
+		}
+		return score;
+	}
+	
+	/**
+	 * Converts a score from the transposition table to be relative to the
+	 * root.
+	 * 
+	 * @param score	the stored score.
+	 * @param ply	the distance from the root.
+	 * @return the score relative to the root.
+	 */
+	private static int fromTable(int score, int ply) {
+		if (score >= WIN_SCORE - MAX_PLY) {
+			return score - ply;
+		} else if (score <= -WIN_SCORE + MAX_PLY) {
+			return score + ply;
+		}
+		return score;
+	}
+	
+	/**
+	 * Gets the best move found by the last search.
+	 * 
+	 * @return the best packed turn, or {@link #NO_MOVE}.
+	 */
+	public long getBestMove() {
+		return bestMove;
+	}
+	
+	/**
+	 * Gets the score of the best move found by the last search, from the
+	 * point of view of the player that was to move.
+	 * 
+	 * @return the best score.
+	 */
+	public int getBestScore() {
+		return bestScore;
+	}
+	
+	/**
+	 * Gets the number of positions visited by the last search, over all
+	 * threads.
+	 * 
+	 * @return the node count.
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+	
+	/**
+	 * Gets how often a cutoff was caused by the first move searched, which
+	 * measures how well moves are ordered.
+	 * 
+	 * @return the percentage of cutoffs caused by the first move, or 0 if
+	 * there were no cutoffs.
+	 */
+	public double getFirstCutoffRate() {
+		return (cutoffs == 0) ? 0 : firstCutoffs * 100.0 / cutoffs;
+	}
+	
+	/**
+	 * Gets the deepest iteration that was completed by the last search.
+	 * 
+	 * @return the depth reached, in turns.
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * Gets the number of positions visited per second by the last search,
+	 * over all threads.
+	 * 
+	 * @return the search speed in nodes per second.
+	 */
+	public long getNodesPerSecond() {
+		return nodes * 1000 / Math.max(1, elapsed);
+	}
+	
+	/**
+	 * Gets the time taken by the last search.
+	 * 
+	 * @return the elapsed time in milliseconds.
+	 */
+	public long getElapsed() {
+		return elapsed;
+	}
+}
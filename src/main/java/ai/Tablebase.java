@@ -0,0 +1,322 @@
+/* Description: This class defines how endgame positions are numbered and how
+ * their results are stored in endgame database files.
+ */
+
+package ai;
+
+/**
+ * The {@code Tablebase} class holds what the endgame database generator and
+ * prober share: the index of a position, the encoding of its result and the
+ * layout of the files.
+ * <p>
+ * Positions are grouped by their material: the number of black checkers,
+ * black kings, white checkers and white kings. Only positions with black to
+ * move are stored. A position with white to move is looked up as the same
+ * position with the board turned around and the colors swapped (see
+ * {@link #flip(int)}), which has black to move.
+ * <p>
+ * Within a material, each position has a unique index from 0 to
+ * {@link #size(int)} - 1. The index ranks the tiles of each kind of checker in
+ * turn (black checkers, white checkers, black kings, white kings) among the
+ * tiles still free, so every arrangement of the checkers on distinct tiles has
+ * exactly one index and every index one arrangement. Black checkers are
+ * never on the last row (they would be kings), which is left out of their
+ * range. The few arrangements with a white checker on its last row do not
+ * happen in a game and are stored as {@link #INVALID}.
+ * <p>
+ * Each result is a {@code short}: the result in the low 2 bits and the
+ * number of turns until the game ends (with best play) above that. A draw
+ * has no distance. Files can also be written without distances, in which
+ * case every distance is 0.
+ * <p>
+ * A file holds one material and is split into blocks of {@link #BLOCK_SIZE}
+ * results, each compressed with {@link java.util.zip.Deflater}, so a single
+ * block can be read without the rest. The file starts with a header of
+ * {@link #HEADER_SIZE} bytes (the magic number, the material, the number of
+ * positions, the block size and the number of blocks as big-endian ints),
+ * followed by the file offset of each block and of the end of the last block
+ * as big-endian longs, followed by the blocks. A block holds its results as
+ * big-endian shorts.
+ */
+public final class Tablebase {
+	
+	/** The result of a position that is a draw (or not yet known). */
+	public static final int DRAW = 0;
+	
+	/** The result of a position that the player to move wins. */
+	public static final int WIN = 1;
+	
+	/** The result of a position that the player to move loses. */
+	public static final int LOSS = 2;
+	
+	/** The result stored for an index that is not a legal position. */
+	public static final int INVALID = 3;
+	
+	/** The number of results in each block of a file. */
+	public static final int BLOCK_SIZE = 4096;
+	
+	/** The number that starts every file ("ACTB"). */
+	public static final int MAGIC = 0x41435442;
+	
+	/** The number of bytes in the header of a file, before the offsets. */
+	public static final int HEADER_SIZE = 20;
+	
+	/** The tiles a black checker (not a king) can be on. */
+	private static final int BLACK_CHECKER_TILES = 0x0FFFFFFF;
+	
+	/** The last row for white checkers, where they would be kings. */
+	private static final int WHITE_CROWNING_TILES = 0x0000000F;
+	
+	/** The binomial coefficients, C(n, k) = BINOMIAL[n][k]. */
+	private static final int[][] BINOMIAL = new int[33][33];
+	
+	static {
+		for (int n = 0; n <= 32; n ++) {
+			BINOMIAL[n][0] = 1;
+			for (int k = 1; k <= n; k ++) {
+				BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1]
+						+ ((k < n) ? BINOMIAL[n - 1][k] : 0);
+			}
+		}
+	}
+	
+	private Tablebase() {}
+	
+	/**
+	 * Packs the number of each kind of checker into a material, with black to
+	 * move.
+	 * 
+	 * @param blackCheckers	the number of black checkers (not kings).
+	 * @param blackKings	the number of black kings.
+	 * @param whiteCheckers	the number of white checkers (not kings).
+	 * @param whiteKings	the number of white kings.
+	 * @return the material.
+	 */
+	public static int getMaterial(int blackCheckers, int blackKings,
+			int whiteCheckers, int whiteKings) {
+		return (blackCheckers << 12) | (blackKings << 8) | (whiteCheckers << 4)
+				| whiteKings;
+	}
+	
+	/**
+	 * Gets the material of a position, with black to move.
+	 * 
+	 * @param black	the bitboard of the checkers of the player to move.
+	 * @param white	the bitboard of the opponent's checkers.
+	 * @param kings	the bitboard of kings.
+	 * @return the material.
+	 */
+	public static int getMaterial(int black, int white, int kings) {
+		return getMaterial(Integer.bitCount(black & ~kings),
+				Integer.bitCount(black & kings),
+				Integer.bitCount(white & ~kings),
+				Integer.bitCount(white & kings));
+	}
+	
+	public static int getBlackCheckers(int material) {
+		return (material >>> 12) & 15;
+	}
+	
+	public static int getBlackKings(int material) {
+		return (material >>> 8) & 15;
+	}
+	
+	public static int getWhiteCheckers(int material) {
+		return (material >>> 4) & 15;
+	}
+	
+	public static int getWhiteKings(int material) {
+		return material & 15;
+	}
+	
+	/**
+	 * Gets the total number of checkers and kings in a material.
+	 * 
+	 * @param material	the material.
+	 * @return the number of pieces.
+	 */
+	public static int getPieces(int material) {
+		return getBlackCheckers(material) + getBlackKings(material)
+				+ getWhiteCheckers(material) + getWhiteKings(material);
+	}
+	
+	/**
+	 * Gets the material with the colors swapped.
+	 * 
+	 * @param material	the material.
+	 * @return the material seen by the other player.
+	 */
+	public static int mirror(int material) {
+		return ((material & 0xFF) << 8) | ((material >>> 8) & 0xFF);
+	}
+	
+	/**
+	 * Turns a bitboard around, so each tile moves to the tile the opposite
+	 * player sees in its place (tile {@code i} becomes tile {@code 31 - i}).
+	 * A position with white to move is the same as the position with black
+	 * to move, with both bitboards flipped and the colors swapped.
+	 * 
+	 * @param tiles	the bitboard.
+	 * @return the flipped bitboard.
+	 */
+	public static int flip(int tiles) {
+		return Integer.reverse(tiles);
+	}
+	
+	/**
+	 * Gets the number of indices of a material.
+	 * 
+	 * @param material	the material.
+	 * @return the number of positions (including invalid ones).
+	 */
+	public static int size(int material) {
+		int bc = getBlackCheckers(material), bk = getBlackKings(material);
+		int wc = getWhiteCheckers(material), wk = getWhiteKings(material);
+		long size = (long) BINOMIAL[28][bc] * BINOMIAL[32 - bc][wc]
+				* BINOMIAL[32 - bc - wc][bk] * BINOMIAL[32 - bc - wc - bk][wk];
+		if (size > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("too many positions: " + size);
+		}
+		return (int) size;
+	}
+	
+	/**
+	 * Gets the index of a position with black to move.
+	 * 
+	 * @param black	the bitboard of the black checkers.
+	 * @param white	the bitboard of the white checkers.
+	 * @param kings	the bitboard of kings.
+	 * @return the index within the material of the position.
+	 */
+	public static int getIndex(int black, int white, int kings) {
+		int bc = black & ~kings, wc = white & ~kings;
+		int bk = black & kings, wk = white & kings;
+		int used = bc | wc;
+		int index = rank(bc, BLACK_CHECKER_TILES);
+		index = index * BINOMIAL[32 - Integer.bitCount(bc)][Integer
+				.bitCount(wc)] + rank(wc, ~bc);
+		index = index * BINOMIAL[32 - Integer.bitCount(used)][Integer
+				.bitCount(bk)] + rank(bk, ~used);
+		used |= bk;
+		return index * BINOMIAL[32 - Integer.bitCount(used)][Integer
+				.bitCount(wk)] + rank(wk, ~used);
+	}
+	
+	/**
+	 * Gets the position with an index.
+	 * 
+	 * @param material	the material of the position.
+	 * @param index		the index of the position.
+	 * @param position	the array to store the black, white and king
+	 * bitboards in.
+	 * @return true if the position is legal, false if a white checker is on
+	 * its last row.
+	 */
+	public static boolean getPosition(int material, int index,
+			int[] position) {
+		int bc = getBlackCheckers(material), bk = getBlackKings(material);
+		int wc = getWhiteCheckers(material), wk = getWhiteKings(material);
+		
+		// Split the index into the rank of each kind of checker
+		int wkSize = BINOMIAL[32 - bc - wc - bk][wk];
+		int wkRank = index % wkSize;
+		index /= wkSize;
+		int bkSize = BINOMIAL[32 - bc - wc][bk];
+		int bkRank = index % bkSize;
+		index /= bkSize;
+		int wcSize = BINOMIAL[32 - bc][wc];
+		int wcRank = index % wcSize;
+		int bcRank = index / wcSize;
+		
+		// Place them in the same order they were ranked in
+		int blackCheckers = unrank(bcRank, bc, BLACK_CHECKER_TILES);
+		int whiteCheckers = unrank(wcRank, wc, ~blackCheckers);
+		int used = blackCheckers | whiteCheckers;
+		int blackKings = unrank(bkRank, bk, ~used);
+		int whiteKings = unrank(wkRank, wk, ~(used | blackKings));
+		position[0] = blackCheckers | blackKings;
+		position[1] = whiteCheckers | whiteKings;
+		position[2] = blackKings | whiteKings;
+		
+		return (whiteCheckers & WHITE_CROWNING_TILES) == 0;
+	}
+	
+	/**
+	 * Ranks a set of tiles among the free tiles, in colexicographic order.
+	 * 
+	 * @param tiles	the bitboard of tiles to rank (all free).
+	 * @param free	the bitboard of free tiles.
+	 * @return the rank, from 0 to C(free tiles, tiles) - 1.
+	 */
+	private static int rank(int tiles, int free) {
+		int rank = 0;
+		for (int k = 1; tiles != 0; k ++, tiles &= tiles - 1) {
+			int bit = tiles & -tiles;
+			rank += BINOMIAL[Integer.bitCount(free & (bit - 1))][k];
+		}
+		return rank;
+	}
+	
+	/**
+	 * Gets the set of tiles with a rank, the reverse of
+	 * {@link #rank(int, int)}.
+	 * 
+	 * @param rank	the rank.
+	 * @param count	the number of tiles in the set.
+	 * @param free	the bitboard of free tiles.
+	 * @return the bitboard of tiles.
+	 */
+	private static int unrank(int rank, int count, int free) {
+		int tiles = 0;
+		int position = Integer.bitCount(free);
+		for (int k = count; k > 0; k --) {
+			
+			// The largest position p with C(p, k) <= rank
+			do {
+				position --;
+			} while (BINOMIAL[position][k] > rank);
+			rank -= BINOMIAL[position][k];
+			
+			// The tile at that position among the free tiles
+			int f = free;
+			for (int i = 0; i < position; i ++) {
+				f &= f - 1;
+			}
+			tiles |= f & -f;
+		}
+		return tiles;
+	}
+	
+	/**
+	 * Packs a result and its distance.
+	 * 
+	 * @param result	the result ({@link #WIN}, {@link #LOSS}, {@link #DRAW}
+	 * or {@link #INVALID}).
+	 * @param distance	the number of turns until the game ends.
+	 * @return the packed value.
+	 */
+	public static short encode(int result, int distance) {
+		return (short) ((distance << 2) | result);
+	}
+	
+	public static int getResult(short value) {
+		return value & 3;
+	}
+	
+	public static int getDistance(short value) {
+		return (value & 0xFFFF) >>> 2;
+	}
+	
+	/**
+	 * Gets the name of the file for a material, such as {@code db1021.cdb}
+	 * for one black checker, no black kings, two white checkers and one white
+	 * king.
+	 * 
+	 * @param material	the material.
+	 * @return the file name.
+	 */
+	public static String getFileName(int material) {
+		return "db" + getBlackCheckers(material) + getBlackKings(material)
+				+ getWhiteCheckers(material) + getWhiteKings(material) + ".cdb";
+	}
+}
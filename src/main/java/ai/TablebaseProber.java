@@ -0,0 +1,447 @@
+/* Description: This class looks up the results of endgame positions in the
+ * endgame database files.
+ */
+
+package ai;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import model.Board;
+
+/**
+ * The {@code TablebaseProber} class looks up positions in the files written
+ * by the endgame database generator (see {@link Tablebase} for the format).
+ * The files are memory-mapped, so the operating system only reads the parts
+ * that are used. Only the blocks holding the positions looked up are
+ * decompressed, and they are kept in a cache of limited size which drops
+ * the least recently used block first.
+ * <p>
+ * The prober can be shared by several threads. A lock is only held to look
+ * up or add a block in the cache; blocks are decompressed without it, each
+ * thread with its own decompressor, so the threads of a search do not wait
+ * on each other. The counters of probes and of the cache show how often the
+ * files are useful and how well the cache size fits the search.
+ */
+public class TablebaseProber {
+	
+	/** The value returned for a position that is not in the files. */
+	public static final short NOT_FOUND = -1;
+	
+	/** The size of the block cache if none is specified, in megabytes. */
+	public static final int DEFAULT_CACHE_SIZE = 32;
+	
+	/** The memory used by a cached block, besides its results. */
+	private static final int BLOCK_OVERHEAD = 64;
+	
+	/** The file kept for a material that has no file. */
+	private static final MappedFile NO_FILE = new MappedFile(null);
+	
+	/** The files opened so far, by material. */
+	private final ConcurrentHashMap<Integer, MappedFile> files =
+			new ConcurrentHashMap<>();
+	
+	/**
+	 * The decompressed blocks, least recently used first, also used as the
+	 * lock for the cache.
+	 */
+	private final LinkedHashMap<Long, short[]> cache =
+			new LinkedHashMap<>(16, 0.75f, true);
+	
+	/** The decompressor of each thread. */
+	private final ThreadLocal<Inflater> inflaters =
+			ThreadLocal.withInitial(Inflater::new);
+	
+	/** The directory holding the files. */
+	private final File dir;
+	
+	/** The largest number of pieces of any file in the directory. */
+	private final int maxPieces;
+	
+	/** The maximum memory used by the cached blocks, in bytes. */
+	private final long cacheCapacity;
+	
+	/** The memory used by the cached blocks, in bytes. */
+	private long cacheSize;
+	
+	/** The number of positions looked up. */
+	private final LongAdder probes = new LongAdder();
+	
+	/** The number of positions found in the files. */
+	private final LongAdder hits = new LongAdder();
+	
+	/** The number of blocks found in the cache. */
+	private final LongAdder cacheHits = new LongAdder();
+	
+	/** The number of blocks that had to be decompressed. */
+	private final LongAdder cacheMisses = new LongAdder();
+	
+	public TablebaseProber(File dir) {
+		this(dir, DEFAULT_CACHE_SIZE * 1024L * 1024L);
+	}
+	
+	/**
+	 * Creates a prober for the files in a directory.
+	 * 
+	 * @param dir			the directory with the files.
+	 * @param cacheCapacity	the maximum memory used by cached blocks, in bytes.
+	 */
+	public TablebaseProber(File dir, long cacheCapacity) {
+		this.dir = dir;
+		this.cacheCapacity = Math.max(0, cacheCapacity);
+		
+		// Find the largest material there is a file for
+		int maxPieces = 0;
+		File[] list = dir.listFiles();
+		for (int i = 0; list != null && i < list.length; i ++) {
+			String name = list[i].getName();
+			if (name.matches("db\\d{4}\\.cdb")) {
+				int pieces = 0;
+				for (int j = 2; j < 6; j ++) {
+					pieces += name.charAt(j) - '0';
+				}
+				maxPieces = Math.max(maxPieces, pieces);
+			}
+		}
+		this.maxPieces = maxPieces;
+	}
+	
+	/**
+	 * Looks up a position.
+	 * 
+	 * @param board		the board.
+	 * @param isBlack	the flag indicating if black is to move.
+	 * @return the result and distance of the position for the player to move
+	 * (see {@link Tablebase#getResult(short)}), or {@link #NOT_FOUND} if
+	 * there is no file for its material.
+	 */
+	public short probe(Board board, boolean isBlack) {
+		
+		// Too many pieces to bother looking
+		if (Integer.bitCount(board.getOccupiedMask()) > maxPieces) {
+			return NOT_FOUND;
+		}
+		
+		// Turn the board around if white is to move
+		int black = board.getBlackMask(), white = board.getWhiteMask();
+		int kings = board.getKingMask();
+		if (!isBlack) {
+			int toMove = Tablebase.flip(white);
+			white = Tablebase.flip(black);
+			black = toMove;
+			kings = Tablebase.flip(kings);
+		}
+		
+		return probe(black, white, kings);
+	}
+	
+	/**
+	 * Looks up a position with black to move.
+	 * 
+	 * @param black	the bitboard of the black checkers.
+	 * @param white	the bitboard of the white checkers.
+	 * @param kings	the bitboard of kings.
+	 * @return the result and distance of the position, or {@link #NOT_FOUND}.
+	 */
+	public short probe(int black, int white, int kings) {
+		
+		probes.increment();
+		if (black == 0) {
+			hits.increment();
+			return Tablebase.encode(Tablebase.LOSS, 0);
+		}
+		
+		// Find the file
+		int material = Tablebase.getMaterial(black, white, kings);
+		MappedFile file = getFile(material);
+		if (file == null || white == 0) {
+			return NOT_FOUND;
+		}
+		
+		// Find the block, and the result in it
+		int index = Tablebase.getIndex(black, white, kings);
+		int block = index / file.blockSize;
+		short[] values;
+		try {
+			values = getBlock(file, material, block);
+		} catch (DataFormatException e) {
+			return NOT_FOUND;
+		}
+		hits.increment();
+		
+		return values[index % file.blockSize];
+	}
+	
+	/**
+	 * Gets the file for a material, opening and mapping it the first time.
+	 * 
+	 * @param material	the material.
+	 * @return the file, or null if there is none or it cannot be read.
+	 */
+	private MappedFile getFile(int material) {
+		MappedFile file = files.computeIfAbsent(material, this::openFile);
+		return (file == NO_FILE) ? null : file;
+	}
+		
+	/**
+	 * Opens and maps the file for a material.
+	 * 
+	 * @param material	the material.
+	 * @return the file, or {@link #NO_FILE} if there is none or it cannot be
+	 * read (see {@link #isValid(ByteBuffer, int)}).
+	 */
+	private MappedFile openFile(int material) {
+		
+		// Map the file and read its header
+		MappedFile file = NO_FILE;
+		File f = new File(dir, Tablebase.getFileName(material));
+		if (f.isFile()) {
+			try (RandomAccessFile raf = new RandomAccessFile(f, "r");
+					FileChannel channel = raf.getChannel()) {
+				MappedByteBuffer data = channel.map(
+						FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				if (isValid(data, material)) {
+					file = new MappedFile(data);
+				}
+			} catch (IOException | RuntimeException e) {
+				file = NO_FILE;
+			}
+		}
+		
+		return file;
+	}
+	
+	/**
+	 * Checks the header and block offsets of a file, so a file that was cut
+	 * short or is for another material is never read past its end.
+	 * 
+	 * @param data		the contents of the file.
+	 * @param material	the material the file should be for.
+	 * @return true if the file can be read.
+	 */
+	private static boolean isValid(ByteBuffer data, int material) {
+		
+		// Check the header
+		long length = data.limit();
+		if (length < Tablebase.HEADER_SIZE
+				|| data.getInt(0) != Tablebase.MAGIC
+				|| data.getInt(4) != material) {
+			return false;
+		}
+		int size = data.getInt(8), blockSize = data.getInt(12);
+		int blocks = data.getInt(16);
+		try {
+			if (size != Tablebase.size(material)) {
+				return false;
+			}
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+		if (blockSize <= 0 || blocks != (size + (long) blockSize - 1) / blockSize
+				|| Tablebase.HEADER_SIZE + 8L * (blocks + 1) > length) {
+			return false;
+		}
+		
+		// Check the blocks are in order and inside the file
+		long previous = Tablebase.HEADER_SIZE + 8L * (blocks + 1);
+		for (int i = 0; i <= blocks; i ++) {
+			long offset = data.getLong(Tablebase.HEADER_SIZE + 8 * i);
+			if (offset < previous || offset > length) {
+				return false;
+			}
+			previous = offset;
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Gets the results of a block, from the cache if possible.
+	 * 
+	 * @param file		the file.
+	 * @param material	the material of the file.
+	 * @param block		the number of the block.
+	 * @return the results in the block.
+	 * @throws DataFormatException if the block is corrupt or cannot be read.
+	 */
+	private short[] getBlock(MappedFile file, int material, int block)
+			throws DataFormatException {
+		
+		// Already decompressed
+		long key = ((long) material << 32) | block;
+		short[] values;
+		synchronized (cache) {
+			values = cache.get(key);
+		}
+		if (values != null) {
+			cacheHits.increment();
+			return values;
+		}
+		cacheMisses.increment();
+		
+		// Decompress the block (another thread may be doing the same)
+		if (block < 0 || (long) block * file.blockSize >= file.size) {
+			throw new DataFormatException("no block " + block);
+		}
+		int count = Math.min(file.blockSize,
+				file.size - block * file.blockSize);
+		byte[] bytes = new byte[count * 2];
+		try {
+			ByteBuffer data = file.data.duplicate();
+			int start = (int) data.getLong(Tablebase.HEADER_SIZE + 8 * block);
+			int end = (int) data.getLong(Tablebase.HEADER_SIZE + 8 * block + 8);
+			byte[] compressed = new byte[end - start];
+			data.position(start);
+			data.get(compressed);
+			Inflater inflater = inflaters.get();
+			inflater.reset();
+			inflater.setInput(compressed);
+			int length = 0;
+			while (length < bytes.length && !inflater.finished()) {
+				int n = inflater.inflate(bytes, length, bytes.length - length);
+				if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+					throw new DataFormatException("truncated block");
+				}
+				length += n;
+			}
+			if (length < bytes.length) {
+				throw new DataFormatException("short block");
+			}
+		} catch (RuntimeException e) {
+			
+			// The file changed or is corrupt in a way the header did not show
+			throw new DataFormatException("unreadable block: " + e);
+		}
+		values = new short[count];
+		ByteBuffer.wrap(bytes).asShortBuffer().get(values);
+		
+		// Keep it, dropping the least recently used blocks if needed
+		synchronized (cache) {
+			short[] replaced = cache.put(key, values);
+			if (replaced != null) {
+				cacheSize -= BLOCK_OVERHEAD + 2L * replaced.length;
+			}
+			cacheSize += BLOCK_OVERHEAD + 2L * count;
+			Iterator<short[]> it = cache.values().iterator();
+			while (cacheSize > cacheCapacity && it.hasNext()) {
+				short[] old = it.next();
+				if (old == values) {
+					break;
+				}
+				cacheSize -= BLOCK_OVERHEAD + 2L * old.length;
+				it.remove();
+			}
+		}
+		
+		return values;
+	}
+	
+	/**
+	 * Gets the largest number of pieces there are files for. Positions with
+	 * more pieces are never found.
+	 * 
+	 * @return the number of pieces.
+	 */
+	public int getMaxPieces() {
+		return maxPieces;
+	}
+	
+	/**
+	 * Gets the number of positions looked up.
+	 * 
+	 * @return the number of probes.
+	 */
+	public long getProbes() {
+		return probes.sum();
+	}
+	
+	/**
+	 * Gets the number of positions found in the files.
+	 * 
+	 * @return the number of hits.
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * Gets the number of positions looked up but not found, because there is
+	 * no file for their material.
+	 * 
+	 * @return the number of misses.
+	 */
+	public long getMisses() {
+		return probes.sum() - hits.sum();
+	}
+	
+	/**
+	 * Gets the number of blocks that were already in the cache.
+	 * 
+	 * @return the number of cache hits.
+	 */
+	public long getCacheHits() {
+		return cacheHits.sum();
+	}
+	
+	/**
+	 * Gets the number of blocks that had to be decompressed.
+	 * 
+	 * @return the number of cache misses.
+	 */
+	public long getCacheMisses() {
+		return cacheMisses.sum();
+	}
+	
+	/**
+	 * Gets the memory used by the cached blocks.
+	 * 
+	 * @return the size of the cache in bytes.
+	 */
+	public long getCacheSize() {
+		synchronized (cache) {
+			return cacheSize;
+		}
+	}
+	
+	/**
+	 * Sets every counter back to 0.
+	 */
+	public void resetCounters() {
+		probes.reset();
+		hits.reset();
+		cacheHits.reset();
+		cacheMisses.reset();
+	}
+	
+	/**
+	 * The {@code MappedFile} class holds a memory-mapped file and the values
+	 * from its header.
+	 */
+	private static class MappedFile {
+		
+		/** The contents of the file. */
+		private final ByteBuffer data;
+		
+		/** The number of positions in the file. */
+		private final int size;
+		
+		/** The number of positions in each block. */
+		private final int blockSize;
+		
+		MappedFile(ByteBuffer data) {
+			this.data = data;
+			this.size = (data != null) ? data.getInt(8) : 0;
+			this.blockSize = (data != null) ? data.getInt(12) : 0;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+/* Description: This class keeps track of a player's game clock and decides how
+ * much of it to spend on each move.
+ */
+
+package ai;
+
+/**
+ * The {@code TimeControl} class represents a game clock with a base time and
+ * an increment that is added after every turn. The time allowed for a move is
+ * an even share of the remaining time plus most of the increment, so the
+ * clock never runs out and every move takes a predictable amount of time.
+ */
+public class TimeControl {
+	
+	/** The number of moves the remaining time is assumed to last for. */
+	private static final int MOVES_TO_GO = 30;
+	
+	/** The time kept in reserve for overhead, in milliseconds. */
+	private static final long RESERVE = 50;
+	
+	/** The minimum time allowed for a move, in milliseconds. */
+	private static final long MIN_MOVE_TIME = 10;
+	
+	/** The time on the clock at the start of a game, in milliseconds. */
+	private final long base;
+	
+	/** The time added to the clock after each turn, in milliseconds. */
+	private final long increment;
+	
+	/** The time left on the clock, in milliseconds. */
+	private long remaining;
+	
+	public TimeControl(long base, long increment) {
+		this.base = Math.max(0, base);
+		this.increment = Math.max(0, increment);
+		reset();
+	}
+	
+	/**
+	 * Resets the clock to the base time.
+	 */
+	public void reset() {
+		this.remaining = base;
+	}
+	
+	/**
+	 * Gets the time that should be spent on the next move.
+	 * 
+	 * @return the time to spend in milliseconds.
+	 */
+	public long getMoveTime() {
+		long available = Math.max(0, remaining - RESERVE);
+		long time = available / MOVES_TO_GO + increment * 3 / 4;
+		return Math.max(MIN_MOVE_TIME, Math.min(time, available));
+	}
+	
+	/**
+	 * Updates the clock after a move was made.
+	 * 
+	 * @param elapsed	the time taken by the move in milliseconds.
+	 * @param turnOver	the flag indicating if the player's turn ended with the
+	 * move, in which case the increment is added.
+	 */
+	public void update(long elapsed, boolean turnOver) {
+		this.remaining -= elapsed;
+		if (turnOver) {
+			this.remaining += increment;
+		}
+	}
+	
+	public long getBase() {
+		return base;
+	}
+	
+	public long getIncrement() {
+		return increment;
+	}
+	
+	public long getRemaining() {
+		return remaining;
+	}
+	
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + "[base=" + base + ", increment="
+				+ increment + ", remaining=" + remaining + "]";
+	}
+}
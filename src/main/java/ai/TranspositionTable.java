@@ -0,0 +1,209 @@
+/* Description: This class stores the results of searched positions so that
+ * positions reached through different move orders are only searched once.
+ */
+
+package ai;
+
+import java.util.Arrays;
+
+/**
+ * The {@code TranspositionTable} class is a fixed size hash table of search
+ * results, keyed by the Zobrist hash of a game state. The table is stored as
+ * two parallel arrays: the 64-bit keys and a packed 32-bit entry holding the
+ * score, the best move, the bound type and the depth searched.
+ * <p>
+ * Entries are grouped in buckets of two. The first entry of a bucket is only
+ * replaced by a search that is at least as deep, which keeps the expensive
+ * results, while the second entry is always replaced, which keeps the recent
+ * ones.
+ * <p>
+ * The table can be shared by several searching threads without locks. Each
+ * key is stored XOR-ed with its entry, so if two threads write to the same
+ * slot at once and the key and entry of a slot do not belong together, the
+ * slot simply does not validate and is treated as a miss.
+ */
+public class TranspositionTable {
+	
+	/** The entry returned by {@link #probe(long)} if the key is not stored. */
+	public static final int MISS = 0;
+	
+	/** The bound type of a score that is exact. */
+	public static final int EXACT = 1;
+	
+	/** The bound type of a score that is a lower bound (failed high). */
+	public static final int LOWER = 2;
+	
+	/** The bound type of a score that is an upper bound (failed low). */
+	public static final int UPPER = 3;
+	
+	/** The size of the table if none is specified, in megabytes. */
+	public static final int DEFAULT_SIZE = 16;
+	
+	/** The number of bytes used by one entry. */
+	private static final int ENTRY_SIZE = 12;
+	
+	/** The offset added to scores so they are stored as positive values. */
+	private static final int SCORE_OFFSET = 1 << 13;
+	
+	/** The keys of the stored positions, XOR-ed with their entries. */
+	private final long[] keys;
+	
+	/** The packed entries of the stored positions. */
+	private final int[] entries;
+	
+	/** The mask to get a bucket index from a key. */
+	private final int mask;
+	
+	/**
+	 * Creates a table that uses at most the specified amount of memory. The
+	 * number of entries is rounded down to a power of two.
+	 * 
+	 * @param sizeMB	the size of the table in megabytes.
+	 */
+	public TranspositionTable(int sizeMB) {
+		long bytes = Math.max(1, sizeMB) * 1024L * 1024L;
+		int capacity = Integer.highestOneBit(
+				(int) Math.min(bytes / ENTRY_SIZE, 1 << 30));
+		this.keys = new long[capacity];
+		this.entries = new int[capacity];
+		this.mask = (capacity - 1) & ~1;
+	}
+	
+	/**
+	 * Finds the entry stored for a position.
+	 * 
+	 * @param key	the hash of the position.
+	 * @return the packed entry or {@link #MISS} if the position is not stored.
+	 * @see {@link #getScore(int)}, {@link #getMove(int)},
+	 * {@link #getBound(int)}, {@link #getDepth(int)}
+	 */
+	public int probe(long key) {
+		int i = (int) key & mask;
+		int entry = entries[i];
+		if (entry != MISS && (keys[i] ^ unsigned(entry)) == key) {
+			return entry;
+		}
+		entry = entries[i + 1];
+		if (entry != MISS && (keys[i + 1] ^ unsigned(entry)) == key) {
+			return entry;
+		}
+		return MISS;
+	}
+	
+	/**
+	 * Stores the result of a search of a position.
+	 * 
+	 * @param key	the hash of the position.
+	 * @param depth	the depth the position was searched to (from 0 to 63).
+	 * @param bound	the type of bound of the score: {@link #EXACT},
+	 * {@link #LOWER} or {@link #UPPER}.
+	 * @param score	the score of the position.
+	 * @param move	the packed best move, or a negative value if unknown.
+	 */
+	public void store(long key, int depth, int bound, int score, int move) {
+		
+		// Read the bucket once, as other threads may be writing to it
+		int i = (int) key & mask;
+		int first = entries[i], second = entries[i + 1];
+		boolean firstMatch = (keys[i] ^ unsigned(first)) == key;
+		boolean secondMatch = (keys[i + 1] ^ unsigned(second)) == key;
+		
+		// Keep the previous best move if a new one was not found
+		if (move < 0) {
+			int old = firstMatch ? first : secondMatch ? second : MISS;
+			move = (old == MISS) ? 0 : getMove(old);
+		}
+		int entry = pack(depth, bound, score, move);
+		
+		// Depth-preferred slot, otherwise always replace the second slot
+		if (first == MISS || firstMatch || depth >= getDepth(first)) {
+			entries[i] = entry;
+			keys[i] = key ^ unsigned(entry);
+			if (secondMatch) {
+				entries[i + 1] = MISS;
+				keys[i + 1] = 0;
+			}
+		} else {
+			entries[i + 1] = entry;
+			keys[i + 1] = key ^ unsigned(entry);
+		}
+	}
+	
+	/**
+	 * Removes every entry from the table.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(entries, MISS);
+	}
+	
+	/**
+	 * Gets the number of entries the table can hold.
+	 * 
+	 * @return the capacity of the table.
+	 */
+	public int getCapacity() {
+		return keys.length;
+	}
+	
+	/**
+	 * Converts an entry to a long without sign extension, so that it only
+	 * changes the low 32 bits of a key when XOR-ed with it.
+	 */
+	private static long unsigned(int entry) {
+		return entry & 0xFFFFFFFFL;
+	}
+	
+	/**
+	 * Packs the values of an entry into a single integer. The score uses 14
+	 * bits, the move 10 bits (start and end index), the bound 2 bits and the
+	 * depth 6 bits.
+	 */
+	private static int pack(int depth, int bound, int score, int move) {
+		score = Math.max(-SCORE_OFFSET, Math.min(SCORE_OFFSET - 1, score));
+		depth = Math.max(0, Math.min(63, depth));
+		return (score + SCORE_OFFSET) | ((move & 0x3FF) << 14)
+				| (bound << 24) | (depth << 26);
+	}
+	
+	/**
+	 * Gets the score of an entry.
+	 * 
+	 * @param entry	the packed entry.
+	 * @return the stored score.
+	 */
+	public static int getScore(int entry) {
+		return (entry & 0x3FFF) - SCORE_OFFSET;
+	}
+	
+	/**
+	 * Gets the best move of an entry, as the start and end index of a packed
+	 * move from {@link MoveGenerator}.
+	 * 
+	 * @param entry	the packed entry.
+	 * @return the stored move.
+	 */
+	public static int getMove(int entry) {
+		return (entry >>> 14) & 0x3FF;
+	}
+	
+	/**
+	 * Gets the bound type of an entry.
+	 * 
+	 * @param entry	the packed entry.
+	 * @return {@link #EXACT}, {@link #LOWER} or {@link #UPPER}.
+	 */
+	public static int getBound(int entry) {
+		return (entry >>> 24) & 3;
+	}
+	
+	/**
+	 * Gets the depth of an entry.
+	 * 
+	 * @param entry	the packed entry.
+	 * @return the depth the position was searched to.
+	 */
+	public static int getDepth(int entry) {
+		return entry >>> 26;
+	}
+}
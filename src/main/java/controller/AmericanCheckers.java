@@ -35,29 +35,62 @@
 
 package controller;
 
+import model.GameLog;
 import model.Player;
 import view.MainFrame;
 
 import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
 
+/**
+ * The {@code AmericanCheckers} class starts the game window. The game being
+ * played is recorded in a {@link GameLog} (by default {@value #DEFAULT_LOG},
+ * or the file given as the first argument), so it is resumed if the program
+ * is stopped and started again.
+ */
 public class AmericanCheckers {
 
+	/**
+	 * The file the game is recorded in if none is given.
+	 */
+	public static final String DEFAULT_LOG = "games.log";
+
 	private Player blackPlayer;
 	private Player whitePlayer;
 
 	private MainFrame mainFrame;
 
+	private GameLog log;
+
 	public static void main(String[] args) {
-	    new AmericanCheckers();
+	    new AmericanCheckers(new File(args.length > 0 ? args[0] : DEFAULT_LOG));
 	}
 
-	private AmericanCheckers() {
+	private AmericanCheckers(File logFile) {
 		try {
 			UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
-		SwingUtilities.invokeLater(() -> mainFrame = new MainFrame(AmericanCheckers.this));
+
+		// Open the log, writing what is left of it when the program exits
+		try {
+			this.log = new GameLog(logFile);
+			Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+				try {
+					log.close();
+				} catch (IOException e) {
+					e.printStackTrace();
+				}
+			}));
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+		SwingUtilities.invokeLater(() -> {
+			mainFrame = new MainFrame(AmericanCheckers.this);
+			mainFrame.setLog(log);
+		});
 
 		blackPlayer = PlayerType.HUMAN.getPlayer();
 		whitePlayer = PlayerType.HUMAN.getPlayer();
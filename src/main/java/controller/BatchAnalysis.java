@@ -0,0 +1,313 @@
+/*
+ * Description: This class contains a main method that analyses a stream of
+ * positions without a window and writes the best move for each.
+ */
+
+package controller;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import ai.MoveGenerator;
+import ai.Search;
+import model.Game;
+
+/**
+ * The {@code BatchAnalysis} class reads positions one per line, in the format
+ * of {@link Game#getGameState()}, searches each one to a fixed depth or
+ * number of nodes and writes the result as soon as it is known. The
+ * positions are searched by a pool of threads, each with its own
+ * {@link Search}. A search keeps what it learned from the positions it
+ * searched before (as it does during a game), so the results are only
+ * exactly the same from run to run with one thread.
+ * <p>
+ * Only a limited number of positions are read ahead of the results written
+ * (see {@code -queue}), so the memory used does not depend on the size of
+ * the input. By default the results are written in the order of the input.
+ * With {@code -tagged}, each result is written as soon as its search ends,
+ * which keeps every thread busy when the searches take very different times.
+ * <p>
+ * Each result is a line of tab-separated fields: the line number of the
+ * position (from 1), the position, the best turn as squares (e.g.
+ * {@code 11-15}, or {@code 15x24x31} with every square landed on, or
+ * {@code none} if the game is over), the score for the player to move, the
+ * number of nodes searched and the depth reached. A line that is not a
+ * position gives {@code error} as its turn. Every line has the same number
+ * of fields, with {@code -} as the score and 0 for the counts when there
+ * was nothing to search.
+ * <p>
+ * A run that was stopped can be resumed with {@code -skip}, giving the
+ * number of lines before the first one whose result was not written. Each
+ * progress report gives this number after the results so far are flushed.
+ * Without {@code -tagged}, it is simply the number of lines analysed. With
+ * {@code -tagged}, the results are not written in the order of the input,
+ * so some results after that line may already have been written; they are
+ * written again when the run is resumed, but none are lost.
+ * <p>
+ * Usage: {@code BatchAnalysis [input|-] [-depth N] [-nodes N] [-threads N]
+ * [-hash MB] [-queue N] [-skip N] [-tagged] [-out FILE]}
+ * <ul>
+ * <li>{@code input} is the file to read, or {@code -} for standard input
+ * (the default).</li>
+ * <li>{@code -depth} is the number of turns to search (8 by default, or
+ * unlimited with {@code -nodes}).</li>
+ * <li>{@code -nodes} is the number of nodes to search per position.</li>
+ * <li>{@code -queue} is the number of positions read ahead (4 per thread by
+ * default).</li>
+ * <li>{@code -out} is the file the results are appended to (standard output
+ * by default).</li>
+ * </ul>
+ */
+public class BatchAnalysis {
+
+    /**
+     * The depth searched if no depth or node limit is given.
+     */
+    public static final int DEFAULT_DEPTH = 8;
+
+    /**
+     * The number of positions between progress reports.
+     */
+    private static final int REPORT_INTERVAL = 10000;
+
+    /**
+     * The threads searching positions.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * The search of each thread.
+     */
+    private final ThreadLocal<Search> searches;
+
+    /**
+     * The number of turns to search.
+     */
+    private final int depth;
+
+    /**
+     * The number of nodes to search per position, or 0 for no limit.
+     */
+    private final long nodeLimit;
+
+    /**
+     * Creates an analysis.
+     *
+     * @param threads   the number of threads.
+     * @param hashSize  the size of the transposition table of each thread in
+     *                  megabytes.
+     * @param depth     the number of turns to search.
+     * @param nodeLimit the number of nodes to search, or 0 for no limit.
+     */
+    public BatchAnalysis(int threads, int hashSize, int depth,
+                         long nodeLimit) {
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "analysis-worker");
+            t.setDaemon(true);
+            return t;
+        });
+        this.searches = ThreadLocal.withInitial(() -> {
+            Search search = new Search(hashSize);
+            search.setNodeLimit(nodeLimit);
+            return search;
+        });
+        this.depth = Math.max(1, depth);
+        this.nodeLimit = Math.max(0, nodeLimit);
+    }
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+
+        // Parse the arguments
+        String input = "-", output = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int depth = -1, hashSize = 16, queue = -1;
+        long nodes = 0, skip = 0;
+        boolean tagged = false;
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+            if (args[i].equals("-depth") && hasValue) {
+                depth = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-nodes") && hasValue) {
+                nodes = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-threads") && hasValue) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-hash") && hasValue) {
+                hashSize = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-queue") && hasValue) {
+                queue = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-skip") && hasValue) {
+                skip = Long.parseLong(args[++i]);
+            } else if (args[i].equals("-tagged")) {
+                tagged = true;
+            } else if (args[i].equals("-out") && hasValue) {
+                output = args[++i];
+            } else if (args[i].startsWith("-") && args[i].length() > 1) {
+                System.err.println("Usage: BatchAnalysis [input|-] [-depth N]"
+                        + " [-nodes N] [-threads N] [-hash MB] [-queue N]"
+                        + " [-skip N] [-tagged] [-out FILE]");
+                System.exit(1);
+            } else {
+                input = args[i];
+            }
+        }
+        if (depth < 0) {
+            depth = (nodes > 0) ? Search.MAX_PLY : DEFAULT_DEPTH;
+        }
+        if (queue <= 0) {
+            queue = 4 * threads;
+        }
+
+        // Analyse every position
+        BatchAnalysis analysis = new BatchAnalysis(threads, hashSize, depth,
+                nodes);
+        long start = System.nanoTime();
+        try (BufferedReader in = new BufferedReader(input.equals("-")
+                ? new InputStreamReader(System.in) : new FileReader(input));
+             Writer out = new BufferedWriter((output == null)
+                     ? new OutputStreamWriter(System.out)
+                     : new FileWriter(output, true))) {
+            long count = analysis.run(in, out, skip, queue, tagged);
+            out.flush();
+            System.err.printf("%d positions, %d ms%n", count,
+                    (System.nanoTime() - start) / 1000000);
+        } finally {
+            analysis.shutdown();
+        }
+    }
+
+    /**
+     * Analyses every position read and writes the results.
+     *
+     * @param in     the reader of the positions, one per line.
+     * @param out    the writer of the results.
+     * @param skip   the number of lines to skip first.
+     * @param queue  the maximum number of positions read but not written.
+     * @param tagged the flag indicating results are written as soon as they
+     *               are known, rather than in the order of the input.
+     * @return the number of positions analysed.
+     * @throws IOException          if the input cannot be read or the output
+     *                              written.
+     * @throws InterruptedException if interrupted while waiting for a result.
+     */
+    public long run(BufferedReader in, Writer out, long skip, int queue,
+                    boolean tagged) throws IOException, InterruptedException {
+
+        // Skip the lines already analysed
+        long line = 0;
+        while (line < skip && in.readLine() != null) {
+            line++;
+        }
+
+        // Keep a fixed number of positions in flight, writing the oldest (or
+        // any finished one if tagged) to make room for the next. The line
+        // numbers of the positions not written are kept in the order read.
+        CompletionService<String> done = new ExecutorCompletionService<>(pool);
+        Map<Future<String>, Long> pending = new LinkedHashMap<>();
+        long count = 0, start = System.nanoTime();
+        try {
+            for (String state = in.readLine(); state != null
+                    || !pending.isEmpty(); ) {
+                if (state != null && pending.size() < Math.max(1, queue)) {
+                    long number = ++line;
+                    String position = state.trim();
+                    pending.put(done.submit(() -> analyse(number, position)),
+                            number);
+                    state = in.readLine();
+                    continue;
+                }
+                Future<String> result;
+                if (tagged) {
+                    result = done.take();
+                } else {
+                    result = pending.keySet().iterator().next();
+                    done.take();
+                }
+                out.write(result.get());
+                out.write(System.lineSeparator());
+                pending.remove(result);
+
+                // Report the progress, and where to resume from
+                if (++count % REPORT_INTERVAL == 0) {
+                    out.flush();
+                    long resume = pending.isEmpty() ? line
+                            : pending.values().iterator().next() - 1;
+                    System.err.printf("%d positions, %d per second,"
+                                    + " resume with -skip %d%n", count,
+                            count * 1000000000L
+                                    / Math.max(1, System.nanoTime() - start),
+                            resume);
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+
+        return count;
+    }
+
+    /**
+     * Analyses a position.
+     *
+     * @param number the line number of the position.
+     * @param state  the position, as given by {@link Game#getGameState()}.
+     * @return the result line.
+     */
+    String analyse(long number, String state) {
+
+        // Check the position is readable
+        StringBuilder result = new StringBuilder();
+        result.append(number).append('\t').append(state).append('\t');
+        if (!state.matches("[04567]{32}[01](-1|[0-9]{1,2})")) {
+            return result.append("error\t-\t0\t0").toString();
+        }
+        Game game = new Game();
+        game.setGameState(state);
+
+        // Search it
+        Search search = searches.get();
+        long turn = search.search(game, depth, 0);
+        if (turn == Search.NO_MOVE) {
+            return result.append("none\t-\t0\t0").toString();
+        }
+        char separator = MoveGenerator.getCaptured(turn) != 0 ? 'x' : '-';
+        result.append(MoveGenerator.getTurnStart(turn) + 1);
+        for (int tile : MoveGenerator.getPath(game.getBoard(), turn)) {
+            result.append(separator).append(tile + 1);
+        }
+        result.append('\t').append(search.getBestScore());
+        result.append('\t').append(search.getNodes());
+        result.append('\t').append(search.getDepth());
+
+        return result.toString();
+    }
+
+    /**
+     * Stops the threads of the analysis.
+     */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodeLimit() {
+        return nodeLimit;
+    }
+}
@@ -0,0 +1,255 @@
+/*
+ * Description: This class contains a main method that builds an opening book
+ * from recorded games and writes it to disk.
+ */
+
+package controller;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.OpeningBook;
+import model.Game;
+import model.Pdn;
+import model.PdnGame;
+import model.PdnReader;
+
+/**
+ * The {@code OpeningBookBuilder} class replays recorded games, adds up how
+ * often the player to move went on to win, draw or lose from each position
+ * reached in the first turns, and writes the totals as an
+ * {@link OpeningBook}.
+ * <p>
+ * The games are read from PDN files with a {@link PdnReader} (see
+ * {@link Pdn} for how turns are written). Games with an unknown result, that
+ * start from a set-up position (a {@code FEN} tag) or with a turn that is not
+ * legal are left out.
+ * <p>
+ * Usage: {@code OpeningBookBuilder output games... [-plies N] [-min N]}
+ * <ul>
+ * <li>{@code -plies} is the number of turns from the start of each game that
+ * are added (20 by default).</li>
+ * <li>{@code -min} is the number of games a position needs to be kept in the
+ * book (2 by default), which keeps rare positions out of the file.</li>
+ * </ul>
+ */
+public class OpeningBookBuilder {
+
+    /**
+     * The number of turns of each game added if none is specified.
+     */
+    public static final int DEFAULT_PLIES = 20;
+
+    /**
+     * The value returned by {@link #getResult(String)} for an unknown
+     * result.
+     */
+    private static final int NO_RESULT = 2;
+
+    /**
+     * The wins, draws and losses of the player to move, by position key.
+     */
+    private final Map<Long, int[]> stats = new HashMap<>();
+
+    /**
+     * The number of turns from the start of each game that are added.
+     */
+    private final int plies;
+
+    /**
+     * The number of games added.
+     */
+    private int games;
+
+    /**
+     * The number of games left out.
+     */
+    private int skipped;
+
+    /**
+     * Creates a builder.
+     *
+     * @param plies the number of turns of each game to add.
+     */
+    public OpeningBookBuilder(int plies) {
+        this.plies = Math.max(0, plies);
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        // Parse the arguments
+        File output = null;
+        List<File> inputs = new ArrayList<>();
+        int plies = DEFAULT_PLIES, minGames = 2;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-plies") && i + 1 < args.length) {
+                plies = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-min") && i + 1 < args.length) {
+                minGames = Integer.parseInt(args[++i]);
+            } else if (output == null) {
+                output = new File(args[i]);
+            } else {
+                inputs.add(new File(args[i]));
+            }
+        }
+        if (output == null || inputs.isEmpty()) {
+            System.err.println("Usage: OpeningBookBuilder output games..."
+                    + " [-plies N] [-min N]");
+            System.exit(1);
+        }
+
+        // Add every game and write the book
+        long start = System.nanoTime();
+        OpeningBookBuilder builder = new OpeningBookBuilder(plies);
+        for (File input : inputs) {
+            try (Reader in = new BufferedReader(new FileReader(input))) {
+                builder.addGames(in);
+            }
+        }
+        int entries = builder.write(output, minGames);
+        System.out.printf("%d games, %d skipped, %d positions, %d written,"
+                + " %d bytes, %d ms%n", builder.games, builder.skipped,
+                builder.stats.size(), entries, output.length(),
+                (System.nanoTime() - start) / 1000000);
+    }
+
+    /**
+     * Reads games in PDN and adds them to the book.
+     *
+     * @param in the reader to read the games from.
+     * @return the number of games added.
+     * @throws IOException if the games cannot be read.
+     */
+    public int addGames(Reader in) throws IOException {
+        int added = games;
+        PdnReader reader = new PdnReader(in);
+        for (PdnGame game; (game = reader.next()) != null; ) {
+            int result = getResult(game.getResult());
+            if (result != NO_RESULT && game.getTag("FEN") == null
+                    && addGame(game.getMoves(), result)) {
+                games++;
+            } else {
+                skipped++;
+            }
+        }
+        return games - added;
+    }
+
+    /**
+     * Gets the score of a result for black.
+     *
+     * @param result the result from {@link Pdn#parseResult(String)}.
+     * @return 1 if black won, -1 if white won, 0 for a draw or
+     * {@link #NO_RESULT}.
+     */
+    private static int getResult(String result) {
+        switch (result) {
+            case Pdn.BLACK_WINS:
+                return 1;
+            case Pdn.WHITE_WINS:
+                return -1;
+            case Pdn.DRAW:
+                return 0;
+            default:
+                return NO_RESULT;
+        }
+    }
+
+    /**
+     * Replays a game from the start and adds the positions reached in its
+     * first turns.
+     *
+     * @param moves  the turns of the game, as squares (e.g. {@code 11-15}).
+     * @param result 1 if black won, -1 if white won or 0 for a draw.
+     * @return true if the game was added, false if a turn is not legal.
+     */
+    public boolean addGame(List<String> moves, int result) {
+
+        // Replay the turns, keeping the positions before each one
+        Game game = new Game();
+        int n = Math.min(plies, moves.size());
+        long[] keys = new long[n + 1];
+        boolean[] isBlack = new boolean[n + 1];
+        for (int i = 0; i <= n; i++) {
+            keys[i] = OpeningBook.getKey(game.getBoardReference(),
+                    game.isP1Turn());
+            isBlack[i] = game.isP1Turn();
+            if (i == n) {
+                break;
+            }
+            long turn = Pdn.parseTurn(game, moves.get(i));
+            if (turn == Pdn.NO_TURN) {
+                return false;
+            }
+            game.makeTurn(turn);
+        }
+
+        // Count the result for the player to move in each position
+        for (int i = 0; i <= n; i++) {
+            int[] s = stats.computeIfAbsent(keys[i], k -> new int[3]);
+            int score = isBlack[i] ? result : -result;
+            s[(score > 0) ? 0 : (score == 0) ? 1 : 2]++;
+        }
+
+        return true;
+    }
+
+    /**
+     * Writes the positions played in enough games to a book file, sorted by
+     * key.
+     *
+     * @param file     the file to write.
+     * @param minGames the number of games a position needs to be kept.
+     * @return the number of positions written.
+     * @throws IOException if the file cannot be written.
+     */
+    public int write(File file, int minGames) throws IOException {
+
+        // Sort the keys of the positions kept
+        long[] keys = new long[stats.size()];
+        int n = 0;
+        for (Map.Entry<Long, int[]> e : stats.entrySet()) {
+            int[] s = e.getValue();
+            if (s[0] + s[1] + s[2] >= minGames) {
+                keys[n++] = e.getKey();
+            }
+        }
+        Arrays.sort(keys, 0, n);
+
+        // Write the header and the entries
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(n);
+            out.writeInt(plies);
+            for (int i = 0; i < n; i++) {
+                int[] s = stats.get(keys[i]);
+                out.writeLong(keys[i]);
+                out.writeInt(s[0]);
+                out.writeInt(s[1]);
+                out.writeInt(s[2]);
+            }
+        }
+
+        return n;
+    }
+
+    public int getGames() {
+        return games;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+}
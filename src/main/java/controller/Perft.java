@@ -0,0 +1,285 @@
+/*
+ * Description: This class contains a main method that counts the positions
+ * reachable from a game state, to test and time the move generator.
+ */
+
+package controller;
+
+import ai.MoveGenerator;
+import model.Game;
+
+/**
+ * The {@code Perft} class counts the leaf positions of the game tree to a
+ * fixed depth ("perft"). The counts can be compared with known values to
+ * check the move generator, and the time taken measures its speed.
+ * <p>
+ * A multiple skip is either counted as one ply per skip, or as a single ply
+ * for the whole turn (the standard way to count checkers perft, which gives
+ * 7, 49, 302, 1469, 7361, ... from the start position). Whole turns are
+ * generated with {@link MoveGenerator#getTurns(Game, long[])} and single
+ * skips with {@link MoveGenerator#getMoves(Game, int[])}.
+ * <p>
+ * Usage: {@code Perft depth [-state STATE] [-divide] [-hops] [-hash MB]}
+ * <ul>
+ * <li>{@code -state} starts from a state from {@link Game#getGameState()}
+ * instead of the start position.</li>
+ * <li>{@code -divide} prints the count below each root move.</li>
+ * <li>{@code -hops} counts each skip of a multiple skip as its own ply.</li>
+ * <li>{@code -hash} caches the counts of subtrees in a table of the given
+ * size, so transpositions are only counted once.</li>
+ * </ul>
+ */
+public class Perft {
+
+    /**
+     * The maximum number of plies, including the extra skips of multiple
+     * skips.
+     */
+    private static final int MAX_PLY = 128;
+
+    /**
+     * The moves generated at each ply, when counting every skip.
+     */
+    private final int[][] moves = new int[MAX_PLY][MoveGenerator.MAX_MOVES];
+
+    /**
+     * The turns generated at each ply, when counting whole turns.
+     */
+    private final long[][] turns = new long[MAX_PLY][MoveGenerator.MAX_TURNS];
+
+    /**
+     * The flag indicating if each skip of a multiple skip is a ply.
+     */
+    private final boolean countHops;
+
+    /**
+     * The keys of the cached subtrees (the game hash mixed with the depth),
+     * or null if subtrees are not cached.
+     */
+    private final long[] hashKeys;
+
+    /**
+     * The leaf counts of the cached subtrees.
+     */
+    private final long[] hashCounts;
+
+    /**
+     * The number of positions visited (including inner positions).
+     */
+    private long visited;
+
+    /**
+     * Creates a perft counter.
+     *
+     * @param countHops the flag indicating if each skip of a multiple skip is
+     *                  counted as a ply, rather than the whole turn.
+     * @param hashSize  the size of the subtree cache in megabytes, or 0 to
+     *                  not cache subtrees.
+     */
+    public Perft(boolean countHops, int hashSize) {
+        this.countHops = countHops;
+        if (hashSize > 0) {
+            int capacity = Integer.highestOneBit(
+                    (int) Math.min(hashSize * 1024L * 1024L / 16, 1 << 30));
+            this.hashKeys = new long[capacity];
+            this.hashCounts = new long[capacity];
+        } else {
+            this.hashKeys = null;
+            this.hashCounts = null;
+        }
+    }
+
+    public static void main(String[] args) {
+
+        // Parse the arguments
+        int depth = -1, hashSize = 0;
+        boolean divide = false, countHops = false;
+        Game game = new Game();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-state") && i + 1 < args.length) {
+                game.setGameState(args[++i]);
+            } else if (args[i].equals("-divide")) {
+                divide = true;
+            } else if (args[i].equals("-hops")) {
+                countHops = true;
+            } else if (args[i].equals("-hash") && i + 1 < args.length) {
+                hashSize = Integer.parseInt(args[++i]);
+            } else {
+                depth = Integer.parseInt(args[i]);
+            }
+        }
+        if (depth < 0) {
+            System.err.println("Usage: Perft depth [-state STATE] [-divide]"
+                    + " [-hops] [-hash MB]");
+            System.exit(1);
+        }
+
+        // Count the positions
+        Perft perft = new Perft(countHops, hashSize);
+        long start = System.nanoTime();
+        long count = divide ? perft.divide(game, depth) : perft.count(game, depth);
+        long elapsed = Math.max(1, (System.nanoTime() - start) / 1000000);
+        System.out.println("perft(" + depth + ") = " + count);
+        System.out.println("time: " + elapsed + " ms, positions visited: "
+                + perft.visited + ", nodes/sec: "
+                + (perft.visited * 1000 / elapsed));
+    }
+
+    /**
+     * Counts the leaf positions to a fixed depth.
+     *
+     * @param game  the game to count from, which is left unchanged.
+     * @param depth the depth to count to.
+     * @return the number of leaf positions.
+     */
+    public long count(Game game, int depth) {
+        this.visited = 0;
+        return perft(game.copy(), depth, 0);
+    }
+
+    /**
+     * Counts the leaf positions to a fixed depth and prints the count below
+     * each root move.
+     *
+     * @param game  the game to count from, which is left unchanged.
+     * @param depth the depth to count to.
+     * @return the total number of leaf positions.
+     */
+    public long divide(Game game, int depth) {
+
+        // Nothing to divide
+        this.visited = 0;
+        game = game.copy();
+        if (depth <= 0) {
+            return 1;
+        }
+
+        // Count below each root move
+        long total = 0;
+        int n;
+        if (countHops) {
+            int[] list = moves[0];
+            n = MoveGenerator.getMoves(game, list);
+            for (int i = 0; i < n; i++) {
+                long count = countMove(game, list[i], depth, 0);
+                total += count;
+                int start = MoveGenerator.getStartIndex(list[i]);
+                int end = MoveGenerator.getEndIndex(list[i]);
+                System.out.println((start + 1) + (MoveGenerator.isSkip(list[i])
+                        ? "x" : "-") + (end + 1) + ": " + count);
+            }
+        } else {
+            long[] list = turns[0];
+            n = MoveGenerator.getTurns(game, list);
+            for (int i = 0; i < n; i++) {
+                long count = countTurn(game, list[i], depth, 0);
+                total += count;
+                int start = MoveGenerator.getTurnStart(list[i]);
+                int end = MoveGenerator.getTurnEnd(list[i]);
+                System.out.println((start + 1) + (MoveGenerator.getCaptured(
+                        list[i]) != 0 ? "x" : "-") + (end + 1) + ": " + count);
+            }
+        }
+        System.out.println("moves: " + n);
+
+        return total;
+    }
+
+    /**
+     * Counts the leaf positions below a position.
+     *
+     * @param game  the position to count from.
+     * @param depth the remaining depth.
+     * @param ply   the distance from the root.
+     * @return the number of leaf positions.
+     */
+    private long perft(Game game, int depth, int ply) {
+
+        visited++;
+        if (depth <= 0) {
+            return 1;
+        }
+
+        // Look up the cached count
+        int slot = 0;
+        long key = 0;
+        if (hashKeys != null) {
+            key = game.getHash() ^ (depth * 0x9E3779B97F4A7C15L);
+            slot = (int) key & (hashKeys.length - 1);
+            if (hashKeys[slot] == key) {
+                return hashCounts[slot];
+            }
+        }
+
+        // Count below each move
+        long count = 0;
+        if (countHops) {
+            int[] list = moves[ply];
+            int n = MoveGenerator.getMoves(game, list);
+            if (depth == 1) {
+                count = n;
+            } else {
+                for (int i = 0; i < n; i++) {
+                    count += countMove(game, list[i], depth, ply);
+                }
+            }
+        } else {
+            long[] list = turns[ply];
+            int n = MoveGenerator.getTurns(game, list);
+            if (depth == 1) {
+                count = n;
+            } else {
+                for (int i = 0; i < n; i++) {
+                    count += countTurn(game, list[i], depth, ply);
+                }
+            }
+        }
+
+        // Cache the count
+        if (hashKeys != null) {
+            hashKeys[slot] = key;
+            hashCounts[slot] = count;
+        }
+
+        return count;
+    }
+
+    /**
+     * Makes a single move or skip, counts the leaf positions below it and
+     * takes it back.
+     *
+     * @param game  the position before the move.
+     * @param move  the packed move to make.
+     * @param depth the remaining depth before the move.
+     * @param ply   the distance from the root before the move.
+     * @return the number of leaf positions below the move.
+     */
+    private long countMove(Game game, int move, int depth, int ply) {
+        game.applyMove(MoveGenerator.getStartIndex(move),
+                MoveGenerator.getEndIndex(move));
+        long count = perft(game, depth - 1, ply + 1);
+        game.unmakeMove();
+        return count;
+    }
+
+    /**
+     * Makes a whole turn, counts the leaf positions below it and takes it
+     * back.
+     *
+     * @param game  the position before the turn.
+     * @param turn  the packed turn to make.
+     * @param depth the remaining depth before the turn.
+     * @param ply   the distance from the root before the turn.
+     * @return the number of leaf positions below the turn.
+     */
+    private long countTurn(Game game, long turn, int depth, int ply) {
+        game.applyTurn(turn);
+        long count = perft(game, depth - 1, ply + 1);
+        game.unmakeMove();
+        return count;
+    }
+
+    public long getVisited() {
+        return visited;
+    }
+}
@@ -1,6 +1,8 @@
 package controller;
 
+import ai.AlphaBetaPlayer;
 import ai.ComputerPlayer;
+import ai.MctsPlayer;
 import model.HumanPlayer;
 import model.Player;
 
@@ -19,6 +21,20 @@ public enum PlayerType {
         Player getPlayer() {
             return new ComputerPlayer();
         }
+    },
+
+    ALPHA_BETA("Alpha-Beta") {
+        @Override
+        Player getPlayer() {
+            return new AlphaBetaPlayer();
+        }
+    },
+
+    MCTS("Monte Carlo") {
+        @Override
+        Player getPlayer() {
+            return new MctsPlayer();
+        }
     };
 
     String typeName;
@@ -0,0 +1,131 @@
+/*
+ * Description: This class contains a main method that compares the selective
+ * search features by the depth they reach with a fixed number of nodes.
+ */
+
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ai.MoveGenerator;
+import ai.Search;
+import model.Game;
+
+/**
+ * The {@code SearchRegression} class searches a fixed set of positions with
+ * the same node limit for each combination of the selective search features
+ * of {@link Search} (late move reductions, futility pruning and razoring).
+ * For each combination it reports the average depth reached, the depth
+ * gained over a plain search, and how often it picks the same move as a
+ * plain search given many more nodes, so a feature that gains depth by
+ * missing good moves shows up.
+ * <p>
+ * Usage: {@code SearchRegression [nodes] [positions] [hashMB]}
+ */
+public class SearchRegression {
+
+    private static final long DEFAULT_NODES = 200000;
+
+    private static final int DEFAULT_POSITIONS = 40;
+
+    /**
+     * The number of times more nodes the reference search gets.
+     */
+    private static final int REFERENCE_FACTOR = 16;
+
+    /**
+     * The names of the feature combinations, in the order of
+     * {@link #configure(Search, int)}.
+     */
+    private static final String[] CONFIGS = {"none", "reductions", "futility",
+            "razoring", "all"};
+
+    public static void main(String[] args) {
+        long nodeLimit = (args.length > 0) ? Long.parseLong(args[0])
+                : DEFAULT_NODES;
+        int count = (args.length > 1) ? Integer.parseInt(args[1])
+                : DEFAULT_POSITIONS;
+        int hashSize = (args.length > 2) ? Integer.parseInt(args[2]) : 16;
+        List<Game> positions = createPositions(count);
+
+        // Find the reference moves with a plain search
+        long[] reference = new long[positions.size()];
+        for (int i = 0; i < reference.length; i++) {
+            Search search = new Search(hashSize);
+            configure(search, 0);
+            search.setNodeLimit(nodeLimit * REFERENCE_FACTOR);
+            reference[i] = search.search(positions.get(i), Search.MAX_PLY, 0);
+        }
+
+        // Search with each combination of features
+        System.out.printf("%-12s %10s %10s %10s %12s%n", "features",
+                "depth", "gained", "agree %", "time (ms)");
+        double baseDepth = 0;
+        for (int config = 0; config < CONFIGS.length; config++) {
+            long depth = 0, time = 0;
+            int agree = 0;
+            for (int i = 0; i < reference.length; i++) {
+                Search search = new Search(hashSize);
+                configure(search, config);
+                search.setNodeLimit(nodeLimit);
+                long move = search.search(positions.get(i), Search.MAX_PLY, 0);
+                depth += search.getDepth();
+                time += search.getElapsed();
+                if (move == reference[i]) {
+                    agree++;
+                }
+            }
+            double average = (double) depth / reference.length;
+            if (config == 0) {
+                baseDepth = average;
+            }
+
+            System.out.printf("%-12s %10.2f %+10.2f %10.1f %12d%n",
+                    CONFIGS[config], average, average - baseDepth,
+                    agree * 100.0 / reference.length, time);
+        }
+    }
+
+    /**
+     * Switches the selective search features of a search on or off.
+     *
+     * @param search the search to configure.
+     * @param config the index of the combination in {@link #CONFIGS}.
+     */
+    private static void configure(Search search, int config) {
+        boolean all = config == CONFIGS.length - 1;
+        search.setReductions(all || config == 1);
+        search.setFutility(all || config == 2);
+        search.setRazoring(all || config == 3);
+    }
+
+    /**
+     * Creates the test positions by playing random turns from the start of
+     * the game, with a fixed seed so every run uses the same positions.
+     *
+     * @param count the number of positions to create.
+     * @return the list of positions.
+     */
+    private static List<Game> createPositions(int count) {
+        List<Game> positions = new ArrayList<>();
+        Random random = new Random(count);
+        long[] turns = new long[MoveGenerator.MAX_TURNS];
+        while (positions.size() < count) {
+            Game game = new Game();
+            int plies = 4 + random.nextInt(30);
+            for (int i = 0; i < plies; i++) {
+                int n = MoveGenerator.getTurns(game, turns);
+                if (n == 0) {
+                    break;
+                }
+                game.applyTurn(turns[random.nextInt(n)]);
+            }
+            if (!game.isGameOver()) {
+                positions.add(game);
+            }
+        }
+        return positions;
+    }
+}
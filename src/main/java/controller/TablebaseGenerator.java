@@ -0,0 +1,444 @@
+/*
+ * Description: This class contains a main method that builds the endgame
+ * databases by retrograde analysis and writes them to disk.
+ */
+
+package controller;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+import ai.MoveGenerator;
+import ai.Tablebase;
+import model.Board;
+
+/**
+ * The {@code TablebaseGenerator} class solves every position with up to a
+ * number of pieces and writes the results to files in the format described
+ * by {@link Tablebase}.
+ * <p>
+ * The materials are solved from the fewest pieces up, and with fewer
+ * checkers (not kings) first, so every position reached by a skip or a
+ * crowning is already solved. A material and its mirror (the same material
+ * with the colors swapped) are solved together, as the turns of one lead to
+ * the other. They are solved in passes: pass {@code k} finds the positions
+ * that are won or lost in exactly {@code k} turns. A position is won in
+ * {@code k} turns if a turn leads to a position lost in fewer than
+ * {@code k}, and lost in {@code k} turns if every turn leads to a position won
+ * in fewer than {@code k}. When a pass finds nothing new, the positions left
+ * are draws. Each pass is split over the positions, and the parts are solved
+ * by several threads at once. The results of a material are dropped from
+ * memory once no material left to solve can reach it.
+ * <p>
+ * Usage: {@code TablebaseGenerator pieces [-dir DIR] [-threads N] [-wld]}
+ * <ul>
+ * <li>{@code -dir} is the directory the files are written to (the current
+ * directory by default).</li>
+ * <li>{@code -threads} is the number of threads (the number of cores by
+ * default).</li>
+ * <li>{@code -wld} only writes the win, loss or draw of each position and not
+ * the distance, which makes the files smaller.</li>
+ * </ul>
+ */
+public class TablebaseGenerator {
+
+    /**
+     * The number of positions solved by each task of a pass.
+     */
+    private static final int CHUNK_SIZE = 1 << 14;
+
+    /**
+     * The results of the materials solved so far that are still needed.
+     */
+    private final Map<Integer, short[]> results = new HashMap<>();
+
+    /**
+     * The threads solving the parts of a pass.
+     */
+    private final ExecutorService pool;
+
+    /**
+     * Creates a generator.
+     *
+     * @param threads the number of threads to use.
+     */
+    public TablebaseGenerator(int threads) {
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "tablebase-worker");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        // Parse the arguments
+        int pieces = -1;
+        int threads = Runtime.getRuntime().availableProcessors();
+        File dir = new File(".");
+        boolean distances = true;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("-dir") && i + 1 < args.length) {
+                dir = new File(args[++i]);
+            } else if (args[i].equals("-threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-wld")) {
+                distances = false;
+            } else {
+                pieces = Integer.parseInt(args[i]);
+            }
+        }
+        if (pieces < 2) {
+            System.err.println("Usage: TablebaseGenerator pieces [-dir DIR]"
+                    + " [-threads N] [-wld]");
+            System.exit(1);
+        }
+        List<int[]> groups = getGroups(pieces);
+        for (int[] group : groups) {
+            for (int material : group) {
+                try {
+                    Tablebase.size(material);
+                } catch (IllegalArgumentException e) {
+                    System.err.println("Cannot index " + pieces + " pieces: "
+                            + Tablebase.getFileName(material) + " has "
+                            + e.getMessage());
+                    System.exit(1);
+                }
+            }
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create " + dir);
+        }
+
+        // Solve and write each material, keeping only the results that a
+        // material still to be solved can reach
+        TablebaseGenerator generator = new TablebaseGenerator(threads);
+        Map<Integer, Integer> lastUses = getLastUses(groups);
+        long start = System.nanoTime();
+        for (int g = 0; g < groups.size(); g++) {
+            int[] group = groups.get(g);
+            long groupStart = System.nanoTime();
+            int passes = generator.solve(group);
+            for (int material : group) {
+                File file = new File(dir, Tablebase.getFileName(material));
+                short[] values = generator.results.get(material);
+                write(file, material, values, distances);
+                int[] counts = new int[4];
+                for (short value : values) {
+                    counts[Tablebase.getResult(value)]++;
+                }
+                System.out.printf("%s: %d positions, %d wins, %d losses,"
+                        + " %d draws, %d passes, %d ms, %d bytes%n",
+                        file.getName(), values.length - counts[Tablebase.INVALID],
+                        counts[Tablebase.WIN], counts[Tablebase.LOSS],
+                        counts[Tablebase.DRAW], passes,
+                        (System.nanoTime() - groupStart) / 1000000,
+                        file.length());
+            }
+            final int solved = g;
+            generator.results.keySet().removeIf(
+                    material -> lastUses.getOrDefault(material, -1) <= solved);
+        }
+        System.out.println("time: " + (System.nanoTime() - start) / 1000000
+                + " ms");
+    }
+
+    /**
+     * Gets the materials to solve, in the order they must be solved, grouped
+     * with their mirrors.
+     *
+     * @param pieces the maximum number of pieces.
+     * @return the groups of one or two materials.
+     */
+    static List<int[]> getGroups(int pieces) {
+        List<int[]> groups = new ArrayList<>();
+        for (int total = 2; total <= pieces; total++) {
+            for (int checkers = 0; checkers <= total; checkers++) {
+                for (int bc = 0; bc <= checkers; bc++) {
+                    int wc = checkers - bc;
+                    for (int bk = 0; bk <= total - checkers; bk++) {
+                        int wk = total - checkers - bk;
+
+                        // Both players need a piece, and the mirror is
+                        // added with the material that comes first
+                        if (bc + bk == 0 || wc + wk == 0) {
+                            continue;
+                        }
+                        int material = Tablebase.getMaterial(bc, bk, wc, wk);
+                        int mirror = Tablebase.mirror(material);
+                        if (mirror == material) {
+                            groups.add(new int[]{material});
+                        } else if (material < mirror) {
+                            groups.add(new int[]{material, mirror});
+                        }
+                    }
+                }
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Finds the last group that reads the results of each material.
+     *
+     * @param groups the groups, in the order they are solved.
+     * @return the index of the last group reading each material, by
+     * material.
+     */
+    static Map<Integer, Integer> getLastUses(List<int[]> groups) {
+        Map<Integer, Integer> lastUses = new HashMap<>();
+        for (int g = 0; g < groups.size(); g++) {
+            for (int material : groups.get(g)) {
+                for (int next : getSuccessors(material)) {
+                    lastUses.put(next, g);
+                }
+            }
+        }
+        return lastUses;
+    }
+
+    /**
+     * Gets the materials that a turn can lead to from a material, with the
+     * colors swapped so the opponent is black. A turn may crown the checker
+     * moved and may skip any number of the opponent's pieces. Some of these
+     * may not be reachable in practice, which only keeps results longer.
+     *
+     * @param material the material, black to move.
+     * @return the materials looked up while solving it.
+     */
+    static List<Integer> getSuccessors(int material) {
+        int bc = Tablebase.getBlackCheckers(material);
+        int bk = Tablebase.getBlackKings(material);
+        int wc = Tablebase.getWhiteCheckers(material);
+        int wk = Tablebase.getWhiteKings(material);
+        List<Integer> successors = new ArrayList<>();
+        for (int crown = 0; crown <= Math.min(1, bc); crown++) {
+            for (int c = 0; c <= wc; c++) {
+                for (int k = 0; k <= wk; k++) {
+                    if (c + k > 0) {
+                        successors.add(Tablebase.getMaterial(c, k,
+                                bc - crown, bk + crown));
+                    }
+                }
+            }
+        }
+        return successors;
+    }
+
+    /**
+     * Solves a group of materials. Every material they lead to must already
+     * be solved.
+     *
+     * @param group the materials to solve together.
+     * @return the number of passes.
+     */
+    int solve(int[] group) {
+
+        for (int material : group) {
+            results.put(material, new short[Tablebase.size(material)]);
+        }
+
+        // Solve in passes until nothing changes and no result that was seen
+        // is still too far away to be used
+        int pass = 0;
+        for (boolean more = true; more; pass++) {
+            int pending = -1;
+            for (int material : group) {
+                pending = Math.max(pending, runPass(material, pass));
+            }
+            more = pending >= pass;
+        }
+        return pass;
+    }
+
+    /**
+     * Runs one pass over a material, split over the threads.
+     *
+     * @param material the material.
+     * @param pass     the number of the pass, which is the distance of the
+     *                 results it finds.
+     * @return the pass if any result was found, or else the largest distance
+     * of a result seen that is too far away to be used yet, or -1 if there
+     * is none.
+     */
+    private int runPass(int material, int pass) {
+        short[] values = results.get(material);
+        List<Future<Integer>> tasks = new ArrayList<>();
+        for (int from = 0; from < values.length; from += CHUNK_SIZE) {
+            final int start = from;
+            final int end = Math.min(values.length, from + CHUNK_SIZE);
+            tasks.add(pool.submit(() -> solvePart(material, values, start,
+                    end, pass)));
+        }
+        int pending = -1;
+        for (Future<Integer> task : tasks) {
+            try {
+                pending = Math.max(pending, task.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Solves the unknown positions in part of a material, for one pass. The
+     * results found in this pass have the distance of the pass, so they do
+     * not affect other positions until the next pass, and the parts can be
+     * solved in any order.
+     *
+     * @param material the material.
+     * @param values   the results of the material.
+     * @param start    the first index to solve.
+     * @param end      the index after the last to solve.
+     * @param pass     the number of the pass.
+     * @return the pass if any result was found, or else the largest distance
+     * of a result seen that is too far away to be used yet, or -1 if there
+     * is none.
+     */
+    private int solvePart(int material, short[] values, int start,
+                              int end, int pass) {
+        int[] position = new int[3];
+        long[] turns = new long[MoveGenerator.MAX_TURNS];
+        int pending = -1;
+        for (int index = start; index < end; index++) {
+
+            // Only positions that are not known yet
+            if (values[index] != 0) {
+                continue;
+            }
+            if (!Tablebase.getPosition(material, index, position)) {
+                values[index] = Tablebase.encode(Tablebase.INVALID, 0);
+                continue;
+            }
+
+            // Won if a turn leads to a loss in fewer turns, lost if every
+            // turn leads to a win in fewer turns
+            Board board = Board.fromMasks(position[0], position[1],
+                    position[2]);
+            int n = MoveGenerator.getTurns(board, true, turns);
+            int result = Tablebase.LOSS;
+            for (int i = 0; i < n && result != Tablebase.WIN; i++) {
+                short next = getResult(position, turns[i]);
+                int nextResult = Tablebase.getResult(next);
+                int distance = Tablebase.getDistance(next);
+                if (nextResult == Tablebase.LOSS && distance < pass) {
+                    result = Tablebase.WIN;
+                } else if (nextResult != Tablebase.WIN || distance >= pass) {
+                    result = Tablebase.DRAW;
+                }
+                if (nextResult != Tablebase.DRAW && distance >= pass) {
+                    pending = Math.max(pending, distance);
+                }
+            }
+            if (result != Tablebase.DRAW) {
+                values[index] = Tablebase.encode(result, pass);
+                pending = pass;
+            }
+        }
+        return pending;
+    }
+
+    /**
+     * Gets the result of the position after a turn, for the opponent (who is
+     * then to move).
+     *
+     * @param position the black, white and king bitboards, black to move.
+     * @param turn     the packed turn.
+     * @return the result of the position after the turn.
+     */
+    private short getResult(int[] position, long turn) {
+
+        // Make the turn
+        int start = 1 << MoveGenerator.getTurnStart(turn);
+        int end = 1 << MoveGenerator.getTurnEnd(turn);
+        int captured = MoveGenerator.getCaptured(turn);
+        int black = (position[0] & ~start) | end;
+        int white = position[1] & ~captured;
+        int kings = position[2] & ~captured;
+        if ((kings & start) != 0 || MoveGenerator.isPromotion(turn)) {
+            kings = (kings & ~start) | end;
+        }
+
+        // Nothing left to move
+        if (white == 0) {
+            return Tablebase.encode(Tablebase.LOSS, 0);
+        }
+
+        // Look it up with the colors swapped, so white is to move
+        int toMove = Tablebase.flip(white), other = Tablebase.flip(black);
+        kings = Tablebase.flip(kings);
+        short[] values = results.get(Tablebase.getMaterial(toMove, other,
+                kings));
+        return values[Tablebase.getIndex(toMove, other, kings)];
+    }
+
+    /**
+     * Writes the results of a material to a file.
+     *
+     * @param file      the file to write.
+     * @param material  the material.
+     * @param values    the results.
+     * @param distances the flag indicating if distances are written.
+     * @throws IOException if the file cannot be written.
+     */
+    static void write(File file, int material, short[] values,
+                      boolean distances) throws IOException {
+
+        // Compress each block
+        int blocks = (values.length + Tablebase.BLOCK_SIZE - 1)
+                / Tablebase.BLOCK_SIZE;
+        List<byte[]> data = new ArrayList<>(blocks);
+        for (int b = 0; b < blocks; b++) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            try (DataOutputStream out = new DataOutputStream(
+                    new DeflaterOutputStream(bytes, deflater))) {
+                int end = Math.min(values.length, (b + 1) * Tablebase.BLOCK_SIZE);
+                for (int i = b * Tablebase.BLOCK_SIZE; i < end; i++) {
+                    short value = values[i];
+                    out.writeShort(distances ? value
+                            : Tablebase.encode(Tablebase.getResult(value), 0));
+                }
+            }
+            deflater.end();
+            data.add(bytes.toByteArray());
+        }
+
+        // Write the header, the offsets and the blocks
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(file)))) {
+            out.writeInt(Tablebase.MAGIC);
+            out.writeInt(material);
+            out.writeInt(values.length);
+            out.writeInt(Tablebase.BLOCK_SIZE);
+            out.writeInt(blocks);
+            long offset = Tablebase.HEADER_SIZE + 8L * (blocks + 1);
+            for (byte[] block : data) {
+                out.writeLong(offset);
+                offset += block.length;
+            }
+            out.writeLong(offset);
+            for (byte[] block : data) {
+                out.write(block);
+            }
+        }
+    }
+}
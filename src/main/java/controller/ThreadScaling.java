@@ -0,0 +1,100 @@
+/*
+ * Description: This class contains a main method that measures how the
+ * alpha-beta search scales with the number of threads.
+ */
+
+package controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import ai.MoveGenerator;
+import ai.Search;
+import model.Game;
+
+/**
+ * The {@code ThreadScaling} class searches a fixed set of positions to a fixed
+ * depth with 1, 2, 4, ... threads up to the number of cores, and reports the
+ * time to depth, the nodes per second, the speedup over one thread and the
+ * percentage of cutoffs caused by the first move searched.
+ * <p>
+ * Usage: {@code ThreadScaling [depth] [maxThreads] [hashMB]}
+ */
+public class ThreadScaling {
+
+    private static final int DEFAULT_DEPTH = 10;
+
+    private static final int POSITIONS = 8;
+
+    public static void main(String[] args) {
+        int depth = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_DEPTH;
+        int maxThreads = (args.length > 1) ? Integer.parseInt(args[1])
+                : Runtime.getRuntime().availableProcessors();
+        int hashSize = (args.length > 2) ? Integer.parseInt(args[2]) : 64;
+        List<Game> positions = createPositions(POSITIONS);
+
+        // Warm up the JIT so the first row is not penalised
+        for (Game game : positions) {
+            new Search(hashSize).search(game, depth - 2);
+        }
+
+        System.out.printf("%8s %10s %14s %12s %8s %9s%n", "threads",
+                "time (ms)", "nodes", "nodes/sec", "speedup", "1st cut %");
+        long baseTime = 0;
+        for (int threads = 1; threads <= maxThreads;
+             threads = (threads * 2 > maxThreads && threads < maxThreads)
+                     ? maxThreads : threads * 2) {
+
+            // Search every position with a fresh table
+            long time = 0, nodes = 0;
+            double firstCutoffs = 0;
+            for (Game game : positions) {
+                Search search = new Search(hashSize);
+                search.setThreads(threads);
+                search.search(game, depth);
+                time += search.getElapsed();
+                nodes += search.getNodes();
+                firstCutoffs += search.getFirstCutoffRate() / positions.size();
+                search.shutdown();
+            }
+            if (threads == 1) {
+                baseTime = time;
+            }
+
+            System.out.printf("%8d %10d %14d %12d %8.2f %9.1f%n", threads,
+                    time, nodes, nodes * 1000 / Math.max(1, time),
+                    (double) baseTime / Math.max(1, time), firstCutoffs);
+        }
+    }
+
+    /**
+     * Creates the test positions by playing random moves from the start of
+     * the game, with a fixed seed so every run uses the same positions.
+     *
+     * @param count the number of positions to create.
+     * @return the list of positions.
+     */
+    private static List<Game> createPositions(int count) {
+        List<Game> positions = new ArrayList<>();
+        Random random = new Random(count);
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        while (positions.size() < count) {
+            Game game = new Game();
+            int plies = 4 + positions.size() * 4;
+            for (int i = 0; i < plies; i++) {
+                int n = MoveGenerator.getMoves(game, moves);
+                if (n == 0) {
+                    break;
+                }
+                int move = moves[random.nextInt(n)];
+                game.makeMove(MoveGenerator.getStartIndex(move),
+                        MoveGenerator.getEndIndex(move));
+            }
+            if (!game.isGameOver()) {
+                positions.add(game);
+            }
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,631 @@
+/*
+ * Description: This class contains a main method that plays many games
+ * between two computer players without a window and reports which is
+ * stronger.
+ */
+
+package controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import ai.AlphaBetaPlayer;
+import ai.ComputerPlayer;
+import ai.MctsPlayer;
+import ai.MoveGenerator;
+import ai.OpeningBook;
+import ai.TablebaseProber;
+import model.Board;
+import model.Game;
+import model.Player;
+
+/**
+ * The {@code Tournament} class plays games between two players on a pool of
+ * threads and reports the Elo difference between them, with a sequential
+ * probability ratio test (SPRT) to stop as soon as the result is clear.
+ * <p>
+ * Every opening is played twice, once with each player as black, so neither
+ * player gains from a lopsided opening. The openings are either random turns
+ * from the start ({@code random}) or every distinct position reached after a
+ * few turns, in a fixed order ({@code ballot}). A game is adjudicated as won
+ * once the evaluation stays above a margin for {@link #ADJUDICATE_TURNS}
+ * turns in a row, and as drawn when a position is repeated three times or the
+ * game reaches a maximum number of turns.
+ * <p>
+ * Each player is given as a type and options, such as
+ * {@code alphabeta:depth=6,time=100} or {@code mcts:time=200,threads=2}:
+ * <ul>
+ * <li>{@code alphabeta}: {@code depth}, {@code time} (ms per move),
+ * {@code hash} (MB), {@code threads}, {@code book} (opening book file) and
+ * {@code tablebase} (endgame database directory).</li>
+ * <li>{@code mcts}: {@code time} (ms per move), {@code iterations},
+ * {@code threads} and {@code memory} (MB).</li>
+ * <li>{@code computer}: {@code book}.</li>
+ * </ul>
+ * Each thread of the pool creates its own players, which only search with
+ * one thread unless told otherwise.
+ * <p>
+ * Usage: {@code Tournament player1 player2 [-games N] [-threads N]
+ * [-openings random|ballot] [-plies N] [-adjudicate SCORE] [-max-turns N]
+ * [-sprt ELO0 ELO1] [-alpha A] [-beta B] [-seed N]}
+ */
+public class Tournament {
+
+    /**
+     * The number of turns in a row the evaluation has to be decisive to
+     * adjudicate a game.
+     */
+    public static final int ADJUDICATE_TURNS = 4;
+
+    /**
+     * The number of games played between progress reports.
+     */
+    private static final int REPORT_INTERVAL = 100;
+
+    /**
+     * The result of a game for the first player.
+     */
+    private static final int WIN = 0, DRAW = 1, LOSS = 2;
+
+    /**
+     * The number of games added to each result when finding the variance of
+     * the score.
+     */
+    private static final double PSEUDO_COUNT = 0.5;
+
+    /**
+     * The factories of the two players.
+     */
+    private final Supplier<Player> player1, player2;
+
+    /**
+     * The positions the games start from.
+     */
+    private final List<Game> openings;
+
+    /**
+     * The evaluation a game is adjudicated at, or 0 to play every game out.
+     */
+    private int adjudicateScore = 150;
+
+    /**
+     * The number of turns after which a game is a draw.
+     */
+    private int maxTurns = 200;
+
+    /**
+     * The wins, draws and losses of the first player.
+     */
+    private final int[] results = new int[3];
+
+    /**
+     * The flag indicating the games left should not be started.
+     */
+    private volatile boolean stopped;
+
+    /**
+     * Creates a tournament.
+     *
+     * @param player1  the factory of the first player.
+     * @param player2  the factory of the second player.
+     * @param openings the positions to start from, each played twice.
+     */
+    public Tournament(Supplier<Player> player1, Supplier<Player> player2,
+                      List<Game> openings) {
+        this.player1 = player1;
+        this.player2 = player2;
+        this.openings = openings;
+    }
+
+    public static void main(String[] args) throws IOException,
+            InterruptedException {
+
+        // Parse the arguments
+        List<String> players = new ArrayList<>();
+        int games = 1000, threads = Runtime.getRuntime().availableProcessors();
+        int plies = -1, adjudicate = -1, maxTurns = -1;
+        boolean ballot = false;
+        double[] elo = null;
+        double alpha = 0.05, beta = 0.05;
+        long seed = 1;
+        for (int i = 0; i < args.length; i++) {
+            boolean hasValue = i + 1 < args.length;
+            if (args[i].equals("-games") && hasValue) {
+                games = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-threads") && hasValue) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-openings") && hasValue) {
+                ballot = args[++i].equals("ballot");
+            } else if (args[i].equals("-plies") && hasValue) {
+                plies = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-adjudicate") && hasValue) {
+                adjudicate = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-max-turns") && hasValue) {
+                maxTurns = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-sprt") && i + 2 < args.length) {
+                elo = new double[]{Double.parseDouble(args[++i]),
+                        Double.parseDouble(args[++i])};
+            } else if (args[i].equals("-alpha") && hasValue) {
+                alpha = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-beta") && hasValue) {
+                beta = Double.parseDouble(args[++i]);
+            } else if (args[i].equals("-seed") && hasValue) {
+                seed = Long.parseLong(args[++i]);
+            } else {
+                players.add(args[i]);
+            }
+        }
+        if (players.size() != 2) {
+            System.err.println("Usage: Tournament player1 player2 [-games N]"
+                    + " [-threads N] [-openings random|ballot] [-plies N]"
+                    + " [-adjudicate SCORE] [-max-turns N]"
+                    + " [-sprt ELO0 ELO1] [-alpha A] [-beta B] [-seed N]");
+            System.exit(1);
+        }
+
+        // Set up the players and the openings
+        Supplier<Player> p1 = parsePlayer(players.get(0));
+        Supplier<Player> p2 = parsePlayer(players.get(1));
+        List<Game> openings = ballot
+                ? createBallots((plies < 0) ? 3 : plies)
+                : createRandomOpenings((games + 1) / 2,
+                (plies < 0) ? 4 : plies, seed);
+        Tournament tournament = new Tournament(p1, p2, openings);
+        if (adjudicate >= 0) {
+            tournament.setAdjudicateScore(adjudicate);
+        }
+        if (maxTurns > 0) {
+            tournament.setMaxTurns(maxTurns);
+        }
+        System.out.printf("%s vs %s: %d games, %d openings, %d threads%n",
+                players.get(0), players.get(1), games, openings.size(),
+                threads);
+
+        // Play, reporting the progress and stopping once the test is decided
+        long start = System.nanoTime();
+        double[] bounds = {Math.log(beta / (1 - alpha)),
+                Math.log((1 - beta) / alpha)};
+        double[] sprt = elo;
+        String verdict = tournament.play(games, threads, (w, d, l) -> {
+            double llr = (sprt != null) ? getLlr(w, d, l, sprt[0], sprt[1])
+                    : 0;
+            if ((w + d + l) % REPORT_INTERVAL == 0) {
+                System.out.println(format(w, d, l) + ((sprt != null)
+                        ? String.format("  LLR %.2f [%.2f, %.2f]", llr,
+                        bounds[0], bounds[1]) : ""));
+            }
+            if (sprt != null && llr >= bounds[1]) {
+                return "SPRT passed (H1: elo >= " + sprt[1] + ")";
+            } else if (sprt != null && llr <= bounds[0]) {
+                return "SPRT failed (H0: elo <= " + sprt[0] + ")";
+            }
+            return null;
+        });
+
+        // Report the result
+        int[] r = tournament.getResults();
+        System.out.println(format(r[WIN], r[DRAW], r[LOSS]));
+        if (sprt != null) {
+            System.out.printf("LLR %.2f [%.2f, %.2f]: %s%n",
+                    getLlr(r[WIN], r[DRAW], r[LOSS], sprt[0], sprt[1]),
+                    bounds[0], bounds[1],
+                    (verdict != null) ? verdict : "inconclusive");
+        }
+        System.out.println("time: " + (System.nanoTime() - start) / 1000000
+                + " ms");
+    }
+
+    /**
+     * Decides whether to stop after each game.
+     */
+    public interface Monitor {
+
+        /**
+         * Looks at the results so far.
+         *
+         * @param wins   the wins of the first player.
+         * @param draws  the draws.
+         * @param losses the losses of the first player.
+         * @return the reason to stop, or null to keep playing.
+         */
+        String update(int wins, int draws, int losses);
+    }
+
+    /**
+     * Plays the games on a pool of threads. Game {@code i} starts from
+     * opening {@code i / 2}, and the first player is black in the even games.
+     *
+     * @param games   the number of games to play.
+     * @param threads the number of games played at once.
+     * @param monitor the monitor told the results after each game.
+     * @return the reason the monitor stopped the tournament, or null if
+     * every game was played.
+     * @throws InterruptedException if interrupted while waiting for a game.
+     */
+    public String play(int games, int threads, Monitor monitor)
+            throws InterruptedException {
+
+        // Each thread keeps its own players, and shuts them down once the
+        // pool is shut down and its last game is over
+        ThreadLocal<Player[]> players = new ThreadLocal<>();
+        ExecutorService pool = Executors.newFixedThreadPool(
+                Math.max(1, threads), r -> {
+                    Thread t = new Thread(() -> {
+                        try {
+                            r.run();
+                        } finally {
+                            Player[] p = players.get();
+                            for (int i = 0; p != null && i < p.length; i++) {
+                                p[i].shutdown();
+                            }
+                        }
+                    }, "tournament-worker");
+                    t.setDaemon(true);
+                    return t;
+                });
+        CompletionService<Integer> done = new ExecutorCompletionService<>(pool);
+        for (int i = 0; i < games; i++) {
+            final int index = i;
+            done.submit(() -> {
+                if (stopped) {
+                    return -1;
+                }
+                Player[] p = players.get();
+                if (p == null) {
+                    p = new Player[]{player1.get(), player2.get()};
+                    players.set(p);
+                }
+                Game game = openings.get((index / 2) % openings.size()).copy();
+                return playGame(game, p[0], p[1], index % 2 == 0);
+            });
+        }
+
+        // Count the results as the games finish
+        String verdict = null;
+        try {
+            for (int i = 0; i < games && verdict == null; i++) {
+                int result = done.take().get();
+                if (result < 0) {
+                    continue;
+                }
+                synchronized (results) {
+                    results[result]++;
+                }
+                verdict = monitor.update(results[WIN], results[DRAW],
+                        results[LOSS]);
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            this.stopped = true;
+            pool.shutdownNow();
+        }
+
+        return verdict;
+    }
+
+    /**
+     * Plays a game to the end or until it is adjudicated.
+     *
+     * @param game         the position to start from.
+     * @param first        the first player.
+     * @param second       the second player.
+     * @param isFirstBlack the flag indicating the first player is black.
+     * @return the result for the first player.
+     */
+    int playGame(Game game, Player first, Player second,
+                 boolean isFirstBlack) {
+
+        Map<Long, Integer> seen = new HashMap<>();
+        int decisive = 0;
+        for (int turn = 0; turn < maxTurns; turn++) {
+
+            // The player to move loses if it cannot
+            if (game.isGameOver()) {
+                Board b = game.getBoardReference();
+                boolean blackLost = (b.getBlackMask() == 0)
+                        || (b.getWhiteMask() != 0 && game.isP1Turn());
+                return (blackLost == isFirstBlack) ? LOSS : WIN;
+            }
+
+            // A position repeated three times is a draw
+            if (seen.merge(game.getHash(), 1, Integer::sum) >= 3) {
+                return DRAW;
+            }
+
+            // Let the player finish its turn, which may take several calls
+            // for players that make one skip at a time
+            boolean isBlack = game.isP1Turn();
+            Player player = (isBlack == isFirstBlack) ? first : second;
+            while (game.isP1Turn() == isBlack && !game.isGameOver()) {
+                int count = game.getMoveCount();
+                player.updateGame(game);
+                if (game.getMoveCount() == count) {
+                    return (player == first) ? LOSS : WIN;
+                }
+            }
+
+            // Adjudicate once one side stays far enough ahead
+            if (adjudicateScore > 0) {
+                int score = ComputerPlayer.evaluate(game.getBoardReference(),
+                        isFirstBlack);
+                if (Math.abs(score) < adjudicateScore) {
+                    decisive = 0;
+                } else if (score > 0) {
+                    decisive = Math.max(decisive, 0) + 1;
+                } else {
+                    decisive = Math.min(decisive, 0) - 1;
+                }
+                if (Math.abs(decisive) >= ADJUDICATE_TURNS) {
+                    return (decisive > 0) ? WIN : LOSS;
+                }
+            }
+        }
+
+        return DRAW;
+    }
+
+    /**
+     * Creates random openings by playing random turns from the start.
+     *
+     * @param count the number of openings.
+     * @param plies the number of turns in each opening.
+     * @param seed  the seed of the random turns.
+     * @return the openings.
+     */
+    static List<Game> createRandomOpenings(int count, int plies, long seed) {
+        List<Game> openings = new ArrayList<>();
+        Random random = new Random(seed);
+        long[] turns = new long[MoveGenerator.MAX_TURNS];
+        while (openings.size() < Math.max(1, count)) {
+            Game game = new Game();
+            for (int i = 0; i < plies && !game.isGameOver(); i++) {
+                int n = MoveGenerator.getTurns(game, turns);
+                game.applyTurn(turns[random.nextInt(n)]);
+            }
+            if (!game.isGameOver()) {
+                openings.add(game);
+            }
+        }
+        return openings;
+    }
+
+    /**
+     * Creates every distinct position reached after a number of turns from
+     * the start, in the order the turns are generated (the ballots).
+     *
+     * @param plies the number of turns in each opening.
+     * @return the openings.
+     */
+    static List<Game> createBallots(int plies) {
+        List<Game> level = new ArrayList<>();
+        level.add(new Game());
+        long[] turns = new long[MoveGenerator.MAX_TURNS];
+        for (int ply = 0; ply < plies; ply++) {
+            List<Game> next = new ArrayList<>();
+            Set<Long> seen = new LinkedHashSet<>();
+            for (Game game : level) {
+                int n = MoveGenerator.getTurns(game, turns);
+                for (int i = 0; i < n; i++) {
+                    Game copy = game.copy();
+                    copy.applyTurn(turns[i]);
+                    if (!copy.isGameOver() && seen.add(copy.getHash())) {
+                        next.add(copy);
+                    }
+                }
+            }
+            level = next;
+        }
+        return level;
+    }
+
+    /**
+     * Creates the factory of a player from its description, such as
+     * {@code alphabeta:depth=6,time=100}. Files shared by every copy of the
+     * player (an opening book or endgame databases) are opened once.
+     *
+     * @param spec the type of player and its options.
+     * @return the factory.
+     * @throws IOException if a file cannot be opened.
+     */
+    static Supplier<Player> parsePlayer(String spec) throws IOException {
+
+        // Split the type from the options
+        int colon = spec.indexOf(':');
+        String type = (colon < 0) ? spec : spec.substring(0, colon);
+        Map<String, String> options = new HashMap<>();
+        if (colon >= 0) {
+            for (String option : spec.substring(colon + 1).split(",")) {
+                String[] kv = option.split("=", 2);
+                options.put(kv[0], (kv.length > 1) ? kv[1] : "");
+            }
+        }
+        OpeningBook book = options.containsKey("book")
+                ? new OpeningBook(new File(options.get("book"))) : null;
+        TablebaseProber tablebase = options.containsKey("tablebase")
+                ? new TablebaseProber(new File(options.get("tablebase")))
+                : null;
+        int threads = Integer.parseInt(options.getOrDefault("threads", "1"));
+
+        switch (type) {
+            case "alphabeta": {
+                int depth = Integer.parseInt(options.getOrDefault("depth",
+                        "" + AlphaBetaPlayer.DEFAULT_DEPTH));
+                long time = Long.parseLong(options.getOrDefault("time", "0"));
+                int hash = Integer.parseInt(options.getOrDefault("hash", "16"));
+                return () -> {
+                    AlphaBetaPlayer p = new AlphaBetaPlayer(depth, time, hash);
+                    p.setThreads(threads);
+                    p.setBook(book);
+                    p.getSearch().setTablebase(tablebase);
+                    return p;
+                };
+            }
+            case "mcts": {
+                long time = Long.parseLong(options.getOrDefault("time",
+                        "" + MctsPlayer.DEFAULT_MOVE_TIME));
+                long iterations = Long.parseLong(options.getOrDefault(
+                        "iterations", "0"));
+                int memory = Integer.parseInt(options.getOrDefault("memory",
+                        "" + MctsPlayer.DEFAULT_MEMORY));
+                return () -> {
+                    MctsPlayer p = new MctsPlayer(time, threads, memory);
+                    p.setIterations(iterations);
+                    return p;
+                };
+            }
+            case "computer":
+                return () -> {
+                    ComputerPlayer p = new ComputerPlayer();
+                    p.setBook(book);
+                    return p;
+                };
+            default:
+                throw new IllegalArgumentException("unknown player: " + type);
+        }
+    }
+
+    /**
+     * Gets the expected score of a player that is a number of Elo points
+     * stronger.
+     *
+     * @param elo the Elo difference.
+     * @return the expected score, from 0 to 1.
+     */
+    static double getScore(double elo) {
+        return 1 / (1 + Math.pow(10, -elo / 400));
+    }
+
+    /**
+     * Gets the Elo difference matching an expected score.
+     *
+     * @param score the expected score, from 0 to 1.
+     * @return the Elo difference.
+     */
+    static double getElo(double score) {
+        score = Math.min(Math.max(score, 1e-6), 1 - 1e-6);
+        return -400 * Math.log10(1 / score - 1);
+    }
+
+    /**
+     * Gets the log-likelihood ratio of the hypothesis that the first player
+     * is {@code elo1} stronger over the hypothesis that it is {@code elo0}
+     * stronger, using the normal approximation of the score over the games
+     * (wins, draws and losses as a trinomial).
+     *
+     * @param wins   the wins of the first player.
+     * @param draws  the draws.
+     * @param losses the losses of the first player.
+     * @param elo0   the Elo difference of the null hypothesis.
+     * @param elo1   the Elo difference of the alternative hypothesis.
+     * @return the log-likelihood ratio, 0 if there are no results yet.
+     */
+    static double getLlr(int wins, int draws, int losses, double elo0,
+                         double elo1) {
+        int n = wins + draws + losses;
+        if (n == 0) {
+            return 0;
+        }
+        double score = (wins + 0.5 * draws) / n;
+        double variance = getVariance(wins, draws, losses);
+        double s0 = getScore(elo0), s1 = getScore(elo1);
+        return (s1 - s0) * (2 * score - s0 - s1) / (2 * variance) * n;
+    }
+
+    /**
+     * Gets the variance of the score of a game. Half a game is added to each
+     * result first, so the variance is not 0 when every game had the same
+     * result (e.g. a player that never lost) and a test can still end.
+     *
+     * @param wins   the wins of the first player.
+     * @param draws  the draws.
+     * @param losses the losses of the first player.
+     * @return the variance of the score of a game.
+     */
+    static double getVariance(int wins, int draws, int losses) {
+        double w = wins + PSEUDO_COUNT, d = draws + PSEUDO_COUNT;
+        double l = losses + PSEUDO_COUNT, n = w + d + l;
+        double score = (w + 0.5 * d) / n;
+        return (w * (1 - score) * (1 - score)
+                + d * (0.5 - score) * (0.5 - score)
+                + l * score * score) / n;
+    }
+
+    /**
+     * Formats the results with the Elo difference and its 95% confidence
+     * interval.
+     *
+     * @param wins   the wins of the first player.
+     * @param draws  the draws.
+     * @param losses the losses of the first player.
+     * @return the line to print.
+     */
+    static String format(int wins, int draws, int losses) {
+        int n = wins + draws + losses;
+        double score = (n == 0) ? 0.5 : (wins + 0.5 * draws) / n;
+        double margin = 1.96 * Math.sqrt(getVariance(wins, draws, losses)
+                / Math.max(1, n));
+        String line = String.format("games %d: +%d =%d -%d  score %.1f%%"
+                        + "  elo %s", n, wins, draws, losses, score * 100,
+                formatElo(score));
+
+        // An interval reaching a score of 0 or 1 has no Elo bound on that side
+        double low = score - margin, high = score + margin;
+        if (low > 0 && high < 1) {
+            return line + String.format(" +/- %.1f",
+                    (getElo(high) - getElo(low)) / 2);
+        }
+        return line + " (" + formatElo(low) + " to " + formatElo(high) + ")";
+    }
+
+    /**
+     * Formats the Elo difference matching a score, which is infinite for a
+     * score of 0 or 1.
+     *
+     * @param score the score.
+     * @return the Elo difference, such as {@code +35.2} or {@code +inf}.
+     */
+    private static String formatElo(double score) {
+        if (score <= 0) {
+            return "-inf";
+        } else if (score >= 1) {
+            return "+inf";
+        }
+        return String.format("%+.1f", getElo(score) + 0.0);
+    }
+
+    public int[] getResults() {
+        synchronized (results) {
+            return results.clone();
+        }
+    }
+
+    public void setAdjudicateScore(int adjudicateScore) {
+        this.adjudicateScore = Math.max(0, adjudicateScore);
+    }
+
+    public int getAdjudicateScore() {
+        return adjudicateScore;
+    }
+
+    public void setMaxTurns(int maxTurns) {
+        this.maxTurns = Math.max(1, maxTurns);
+    }
+
+    public int getMaxTurns() {
+        return maxTurns;
+    }
+}
@@ -1,13 +1,14 @@
 /* Description: This class implements an 8x8 checker board. Under standard
  * rules, a checker can only move on black tiles, meaning there are only 32
- * available tiles. It uses three integers to represent the board, giving
- * 3 bits to each black tile.
+ * available tiles. It uses three integer fields to represent the board,
+ * giving 3 bits to each black tile.
  */
 
 package model;
 
 import java.awt.Point;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
@@ -15,8 +16,12 @@ import java.util.List;
  * checker board is 8 x 8 (64) tiles, alternating white/black. Checkers are
  * only allowed on black tiles and can therefore only move diagonally. The
  * board is optimized to use as little memory space as possible and only uses
- * 3 integers to represent the state of the board (3 bits for each of the 32
- * tiles). This makes it fast and efficient to {@link #copy()} the board state.
+ * 3 integer fields to represent the state of the board: bitboards of the
+ * occupied tiles, the black checkers and the kings (3 bits for each of the 32
+ * tiles). There is no array behind the fields, so a board is a single small
+ * object and {@link #copy()} does not allocate anything else. The number of
+ * checkers with an ID is counted in constant time with
+ * {@link #count(int)}.
  * <p>
  * This class uses integers to represent the state of each tile and
  * specifically uses these constants for IDs: {@link #EMPTY},
@@ -27,6 +32,15 @@ import java.util.List;
  * {@link #get(int, int)}. Tile states can be set through
  * {@link #set(int, int)} and {@link #set(int, int, int)}. The entire game can
  * be reset with {@link #reset()}.
+ * <p>
+ * The board also keeps a 64-bit {@link Zobrist} hash of the checkers on it,
+ * which is updated every time a tile is set (see {@link #getHash()}).
+ * <p>
+ * The geometry of the board is precomputed for all 32 tiles: the coordinates
+ * of each tile, the neighbor and jump landing tile in each direction (see
+ * {@link #getNeighbor(int, int)} and {@link #getJump(int, int)}) and the tile
+ * skipped between two tiles (see {@link #middleIndex(int, int)}). The index
+ * based methods look these up instead of building {@link Point} objects.
  */
 public class Board {
 
@@ -61,9 +75,108 @@ public class Board {
     public static final int WHITE_KING = 4 * 1 + 2 * 0 + 1 * 1;
 
     /**
-     * The current state of the board, represented as three integers.
+     * The direction down (increasing y) and to the left (decreasing x).
+     */
+    public static final int DOWN_LEFT = 0;
+
+    /**
+     * The direction down (increasing y) and to the right (increasing x).
+     */
+    public static final int DOWN_RIGHT = 1;
+
+    /**
+     * The direction up (decreasing y) and to the left (decreasing x).
+     */
+    public static final int UP_LEFT = 2;
+
+    /**
+     * The direction up (decreasing y) and to the right (increasing x).
+     */
+    public static final int UP_RIGHT = 3;
+
+    /**
+     * The tiles on the row where black checkers are crowned (y = 7).
+     */
+    private static final int BLACK_CROWN_ROW = 0xF0000000;
+
+    /**
+     * The tiles on the row where white checkers are crowned (y = 0).
+     */
+    private static final int WHITE_CROWN_ROW = 0x0000000F;
+
+    /**
+     * The x-coordinate of each tile.
+     */
+    private static final int[] TILE_X = new int[32];
+
+    /**
+     * The y-coordinate of each tile.
+     */
+    private static final int[] TILE_Y = new int[32];
+
+    /**
+     * The tile index of each point (indexed by y * 8 + x), or -1 for white
+     * tiles.
+     */
+    private static final int[] TILE_INDICES = new int[64];
+
+    /**
+     * The neighbor of each tile in each direction, or -1 off the board.
+     */
+    private static final int[][] NEIGHBORS = new int[4][32];
+
+    /**
+     * The tile landed on by a skip from each tile in each direction, or -1
+     * off the board.
      */
-    private int[] state;
+    private static final int[][] JUMPS = new int[4][32];
+
+    /**
+     * The tile skipped between two tiles (indexed by start * 32 + end), or -1
+     * if the tiles are not a skip apart.
+     */
+    private static final byte[] MIDDLES = new byte[32 * 32];
+
+    static {
+        Arrays.fill(TILE_INDICES, -1);
+        Arrays.fill(MIDDLES, (byte) -1);
+        for (int i = 0; i < 32; i++) {
+            TILE_Y[i] = i / 4;
+            TILE_X[i] = 2 * (i % 4) + (TILE_Y[i] + 1) % 2;
+            TILE_INDICES[TILE_Y[i] * 8 + TILE_X[i]] = i;
+        }
+        int[] dx = {-1, 1, -1, 1}, dy = {1, 1, -1, -1};
+        for (int d = 0; d < 4; d++) {
+            for (int i = 0; i < 32; i++) {
+                NEIGHBORS[d][i] = toTileIndex(TILE_X[i] + dx[d], TILE_Y[i] + dy[d]);
+                JUMPS[d][i] = toTileIndex(TILE_X[i] + 2 * dx[d],
+                        TILE_Y[i] + 2 * dy[d]);
+                if (JUMPS[d][i] >= 0) {
+                    MIDDLES[i * 32 + JUMPS[d][i]] = (byte) NEIGHBORS[d][i];
+                }
+            }
+        }
+    }
+
+    /**
+     * The tiles that hold a checker of either color.
+     */
+    private int occupied;
+
+    /**
+     * The tiles that hold a black checker (a subset of the occupied tiles).
+     */
+    private int black;
+
+    /**
+     * The tiles that hold a king (a subset of the occupied tiles).
+     */
+    private int kings;
+
+    /**
+     * The Zobrist hash of the checkers on the board.
+     */
+    private long hash;
 
     /**
      * Constructs a new checker game board, pre-filled with a new game state.
@@ -72,6 +185,21 @@ public class Board {
         reset();
     }
 
+    /**
+     * Constructs a checker board with the specified state.
+     *
+     * @param occupied the bitboard of occupied tiles.
+     * @param black    the bitboard of black checkers.
+     * @param kings    the bitboard of kings.
+     * @param hash     the Zobrist hash of the checkers.
+     */
+    private Board(int occupied, int black, int kings, long hash) {
+        this.occupied = occupied;
+        this.black = black;
+        this.kings = kings;
+        this.hash = hash;
+    }
+
     /**
      * Creates an exact copy of the board. Any changes made to the copy will
      * not affect the current object.
@@ -79,9 +207,28 @@ public class Board {
      * @return a copy of this checker board.
      */
     public Board copy() {
-        Board copy = new Board();
-        copy.state = state.clone();
-        return copy;
+        return new Board(occupied, black, kings, hash);
+    }
+
+    /**
+     * Creates a board with checkers on the specified tiles. A tile in both
+     * the black and white bitboards holds a black checker.
+     *
+     * @param black the bitboard of black checkers (including kings).
+     * @param white the bitboard of white checkers (including kings).
+     * @param kings the bitboard of kings (only occupied tiles are used).
+     * @return the new board.
+     */
+    public static Board fromMasks(int black, int white, int kings) {
+        Board board = new Board(0, 0, 0, 0);
+        int occupied = black | white;
+        for (int tiles = occupied; tiles != 0; tiles &= tiles - 1) {
+            int i = Integer.numberOfTrailingZeros(tiles);
+            int bit = 1 << i;
+            board.set(i, 4 + ((black & bit) != 0 ? 2 : 0)
+                    + ((kings & bit) != 0 ? 1 : 0));
+        }
+        return board;
     }
 
     /**
@@ -92,7 +239,10 @@ public class Board {
     public void reset() {
 
         // Reset the state
-        this.state = new int[3];
+        this.occupied = 0;
+        this.black = 0;
+        this.kings = 0;
+        this.hash = 0;
         for (int i = 0; i < 12; i++) {
             set(i, BLACK_CHECKER);
             set(31 - i, WHITE_CHECKER);
@@ -110,11 +260,11 @@ public class Board {
     public List<Point> find(int id) {
 
         // Find all black tiles with matching IDs
-        List<Point> points = new ArrayList<>();
-        for (int i = 0; i < 32; i++) {
-            if (get(i) == id) {
-                points.add(toPoint(i));
-            }
+        int tiles = getMask(id);
+        List<Point> points = new ArrayList<>(Integer.bitCount(tiles));
+        while (tiles != 0) {
+            points.add(toPoint(Integer.numberOfTrailingZeros(tiles)));
+            tiles &= tiles - 1;
         }
 
         return points;
@@ -152,16 +302,19 @@ public class Board {
             return;
         }
 
-        // Invalid ID, so just set to EMPTY
-        if (id < 0) {
+        // Invalid ID (not a checker), so just set to EMPTY
+        if (id < 0 || (id & 4) == 0) {
             id = EMPTY;
         }
 
+        // Update the hash
+        this.hash ^= Zobrist.piece(get(tileIndex), tileIndex)
+                ^ Zobrist.piece(id, tileIndex);
+
         // Set the state bits
-        for (int i = 0; i < state.length; i++) {
-            boolean set = ((1 << (state.length - i - 1)) & id) != 0;
-            this.state[i] = setBit(state[i], tileIndex, set);
-        }
+        this.occupied = setBit(occupied, tileIndex, id != EMPTY);
+        this.black = setBit(black, tileIndex, (id & 2) != 0);
+        this.kings = setBit(kings, tileIndex, (id & 1) != 0);
     }
 
     /**
@@ -191,8 +344,99 @@ public class Board {
         if (!isValidTileIndex(tileIndex)) {
             return INVALID;
         }
-        return getBit(state[0], tileIndex) * 4 + getBit(state[1], tileIndex) * 2
-                + getBit(state[2], tileIndex);
+        int bit = 1 << tileIndex;
+        if ((occupied & bit) == 0) {
+            return EMPTY;
+        }
+        return 4 + ((black & bit) != 0 ? 2 : 0) + ((kings & bit) != 0 ? 1 : 0);
+    }
+
+    /**
+     * Gets the Zobrist hash of the checkers on the board. Boards with the
+     * same checkers on the same tiles have the same hash.
+     *
+     * @return the 64-bit hash of the board.
+     * @see {@link Zobrist}
+     */
+    public long getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the tiles that hold a checker of either color. Bit {@code i} of the
+     * result corresponds to tile index {@code i}.
+     *
+     * @return the bitboard of occupied tiles.
+     * @see {@link #getBlackMask()}, {@link #getWhiteMask()},
+     * {@link #getKingMask()}
+     */
+    public int getOccupiedMask() {
+        return occupied;
+    }
+
+    /**
+     * Gets the tiles that hold a black checker or black king.
+     *
+     * @return the bitboard of black tiles.
+     * @see {@link #getOccupiedMask()}, {@link #getWhiteMask()}
+     */
+    public int getBlackMask() {
+        return black;
+    }
+
+    /**
+     * Gets the tiles that hold a white checker or white king.
+     *
+     * @return the bitboard of white tiles.
+     * @see {@link #getOccupiedMask()}, {@link #getBlackMask()}
+     */
+    public int getWhiteMask() {
+        return occupied & ~black;
+    }
+
+    /**
+     * Gets the tiles that hold a king of either color.
+     *
+     * @return the bitboard of kings.
+     * @see {@link #getOccupiedMask()}
+     */
+    public int getKingMask() {
+        return kings;
+    }
+
+    /**
+     * Gets the tiles that hold a specific ID.
+     *
+     * @param id the ID to look for.
+     * @return the bitboard of tiles with the ID, or 0 if the ID is not one of
+     * the checker IDs.
+     */
+    public int getMask(int id) {
+        switch (id) {
+            case EMPTY:
+                return ~occupied;
+            case BLACK_CHECKER:
+                return black & ~kings;
+            case WHITE_CHECKER:
+                return occupied & ~black & ~kings;
+            case BLACK_KING:
+                return black & kings;
+            case WHITE_KING:
+                return occupied & ~black & kings;
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Counts the black tiles that hold a specific ID.
+     *
+     * @param id the ID to count.
+     * @return the number of tiles with the ID.
+     * @see {@link #getMask(int)}
+     */
+    public int count(int id) {
+        return Integer.bitCount(getMask(id));
     }
 
     /**
@@ -205,9 +449,80 @@ public class Board {
      * @see {@link #toTileIndex(int, int)}, {@link #toTileIndex(Point)}
      */
     public static Point toPoint(int tileIndex) {
-        int y = tileIndex / 4;
-        int x = 2 * (tileIndex % 4) + (y + 1) % 2;
-        return !isValidTileIndex(tileIndex) ? new Point(-1, -1) : new Point(x, y);
+        return !isValidTileIndex(tileIndex) ? new Point(-1, -1)
+                : new Point(TILE_X[tileIndex], TILE_Y[tileIndex]);
+    }
+
+    /**
+     * Gets the x-coordinate of a black tile.
+     *
+     * @param tileIndex the index of the black tile (from 0 to 31 inclusive).
+     * @return the x-coordinate of the tile (from 0 to 7 inclusive).
+     */
+    public static int getX(int tileIndex) {
+        return TILE_X[tileIndex];
+    }
+
+    /**
+     * Gets the y-coordinate (row) of a black tile.
+     *
+     * @param tileIndex the index of the black tile (from 0 to 31 inclusive).
+     * @return the y-coordinate of the tile (from 0 to 7 inclusive).
+     */
+    public static int getY(int tileIndex) {
+        return TILE_Y[tileIndex];
+    }
+
+    /**
+     * Gets the tile next to a black tile in a direction.
+     *
+     * @param tileIndex the index of the black tile (from 0 to 31 inclusive).
+     * @param direction {@link #DOWN_LEFT}, {@link #DOWN_RIGHT},
+     *                  {@link #UP_LEFT} or {@link #UP_RIGHT}.
+     * @return the index of the neighbor or -1 if it is off the board.
+     */
+    public static int getNeighbor(int tileIndex, int direction) {
+        return NEIGHBORS[direction][tileIndex];
+    }
+
+    /**
+     * Gets the tile landed on by a skip from a black tile in a direction.
+     *
+     * @param tileIndex the index of the black tile (from 0 to 31 inclusive).
+     * @param direction {@link #DOWN_LEFT}, {@link #DOWN_RIGHT},
+     *                  {@link #UP_LEFT} or {@link #UP_RIGHT}.
+     * @return the index of the landing tile or -1 if it is off the board.
+     */
+    public static int getJump(int tileIndex, int direction) {
+        return JUMPS[direction][tileIndex];
+    }
+
+    /**
+     * Gets the index of the tile skipped over between two tiles.
+     *
+     * @param tileIndex1 the index of the first tile.
+     * @param tileIndex2 the index of the second tile.
+     * @return the index of the middle tile, or -1 if either index is not on
+     * the board or the tiles are not distance 2 from each other in x and y.
+     * @see {@link #middlePoint(int, int)}
+     */
+    public static int middleIndex(int tileIndex1, int tileIndex2) {
+        if (!isValidTileIndex(tileIndex1) || !isValidTileIndex(tileIndex2)) {
+            return -1;
+        }
+        return MIDDLES[tileIndex1 * 32 + tileIndex2];
+    }
+
+    /**
+     * Checks if a checker of a color is crowned when it reaches a tile.
+     *
+     * @param tileIndex the index of the black tile.
+     * @param isBlack   the flag indicating if the checker is black.
+     * @return true if the tile is on the opponent's back row.
+     */
+    public static boolean isCrowningTile(int tileIndex, boolean isBlack) {
+        int row = isBlack ? BLACK_CROWN_ROW : WHITE_CROWN_ROW;
+        return isValidTileIndex(tileIndex) && (row & (1 << tileIndex)) != 0;
     }
 
     /**
@@ -223,11 +538,11 @@ public class Board {
     public static int toTileIndex(int x, int y) {
 
         // Invalid (x, y) (i.e. not in board, or white tile)
-        if (!isValidPoint(new Point(x, y))) {
+        if (x < 0 || x > 7 || y < 0 || y > 7) {
             return -1;
         }
 
-        return y * 4 + x / 2;
+        return TILE_INDICES[y * 8 + x];
     }
 
     /**
@@ -323,7 +638,7 @@ public class Board {
      * @see {@link #middlePoint(Point, Point)}, {@link #middlePoint(int, int, int, int)}
      */
     public static Point middlePoint(int tileIndex1, int tileIndex2) {
-        return middlePoint(toPoint(tileIndex1), toPoint(tileIndex2));
+        return toPoint(middleIndex(tileIndex1, tileIndex2));
     }
 
     /**
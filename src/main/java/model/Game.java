@@ -5,7 +5,8 @@
 package model;
 
 import java.awt.Point;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import ai.MoveGenerator;
 import ai.MoveLogic;
@@ -13,9 +14,34 @@ import ai.MoveLogic;
 /**
  * The {@code Game} class represents a game of checkers and ensures that all
  * moves made are valid as per the rules of checkers.
+ * <p>
+ * Moves are made in place and can be taken back with {@link #unmakeMove()}.
+ * Each move pushes a single long onto an undo stack, recording the move (in
+ * the format of {@link MoveGenerator#encodeTurn(int, int, int, boolean)}),
+ * which of the captured checkers were kings and the previous turn and skip
+ * index. This lets a search walk the game tree on one {@code Game} without
+ * copying it. A move is either a single step or skip, or a complete turn
+ * from {@link MoveGenerator#getTurns(Game, long[])}.
+ * <p>
+ * The state can be saved and restored as a string
+ * ({@link #getGameState()}), or as {@link #STATE_SIZE} bytes in a
+ * {@link ByteBuffer} ({@link #getGameState(ByteBuffer)}) when it needs to be
+ * compact and fast. See {@link Pdn} for the standard FEN and PDN formats.
  */
 public class Game {
 
+    /**
+     * The number of bytes of a game state in a {@link ByteBuffer}: the
+     * occupied, black and king bitboards as big-endian ints, then the turn
+     * (the top bit, set for player 1) and the skip index plus one.
+     */
+    public static final int STATE_SIZE = 13;
+
+    /**
+     * The bit set in an undo record if the moved checker was crowned.
+     */
+    private static final long PROMOTED = MoveGenerator.PROMOTION_FLAG;
+
     /**
      * The current state of the checker board.
      */
@@ -31,6 +57,16 @@ public class Game {
      */
     private int skipIndex;
 
+    /**
+     * The records of the moves made, to allow them to be taken back.
+     */
+    private long[] undo = new long[64];
+
+    /**
+     * The number of records on the undo stack.
+     */
+    private int undoCount;
+
     public Game() {
         restart();
     }
@@ -46,6 +82,8 @@ public class Game {
         g.board = board.copy();
         g.isP1Turn = isP1Turn;
         g.skipIndex = skipIndex;
+        g.undo = Arrays.copyOf(undo, Math.max(undoCount, 16));
+        g.undoCount = undoCount;
         return g;
     }
 
@@ -56,6 +94,7 @@ public class Game {
         this.board = new Board();
         this.isP1Turn = true;
         this.skipIndex = -1;
+        this.undoCount = 0;
     }
 
     /**
@@ -88,42 +127,227 @@ public class Game {
             return false;
         }
 
-        // Make the move
-        Point middle = Board.middlePoint(startIndex, endIndex);
-        int midIndex = Board.toTileIndex(middle);
-        board.set(endIndex, board.get(startIndex));
-        board.set(midIndex, Board.EMPTY);
-        board.set(startIndex, Board.EMPTY);
+        applyMove(startIndex, endIndex);
+        return true;
+    }
 
-        // Make the checker a king if necessary
-        Point end = Board.toPoint(endIndex);
-        int id = board.get(endIndex);
-        boolean switchTurn = false;
-        if (end.y == 0 && id == Board.WHITE_CHECKER) {
-            board.set(endIndex, Board.WHITE_KING);
-            switchTurn = true;
-        } else if (end.y == 7 && id == Board.BLACK_CHECKER) {
-            board.set(endIndex, Board.BLACK_KING);
-            switchTurn = true;
-        }
+    /**
+     * Makes a move that is already known to be valid, such as a move from
+     * {@link MoveGenerator}, without validating it. This is the fast path
+     * for a search; moves from users should go through
+     * {@link #makeMove(int, int)}. If assertions are enabled (the JVM
+     * {@code -ea} flag), the move is validated anyway and an invalid move
+     * throws an {@link AssertionError}.
+     *
+     * @param startIndex the start index of the move.
+     * @param endIndex   the end index of the move.
+     * @see {@link #makeMove(int, int)}, {@link #unmakeMove()}
+     */
+    public void applyMove(int startIndex, int endIndex) {
+
+        assert MoveLogic.isValidMove(this, startIndex, endIndex)
+                : "invalid move " + startIndex + " -> " + endIndex
+                + " in " + getGameState();
+
+        // Make the move
+        int midIndex = Board.middleIndex(startIndex, endIndex);
+        boolean midValid = midIndex >= 0;
+        long record = move(startIndex, endIndex, midValid ? 1 << midIndex : 0);
 
         // Check if the turn should switch (i.e. no more skips)
-        boolean midValid = Board.isValidTileIndex(midIndex);
         if (midValid) {
             this.skipIndex = endIndex;
         }
-        if (!midValid || MoveGenerator.getSkips(
-                board.copy(), endIndex).isEmpty()) {
-            switchTurn = true;
-        }
-        if (switchTurn) {
+        if ((record & PROMOTED) != 0 || !midValid
+                || MoveGenerator.getSkipTargets(board, endIndex) == 0) {
             isP1Turn = !isP1Turn;
             skipIndex = -1;
         }
+    }
+
+    /**
+     * Attempts to make a complete turn, which must be one of the turns
+     * generated by {@link MoveGenerator#getTurns(Game, long[])}.
+     *
+     * @param turn the packed turn.
+     * @return true if and only if an update was made to the game state.
+     * @see {@link #applyTurn(long)}
+     */
+    public boolean makeTurn(long turn) {
+
+        // Validate the turn
+        if (!isLegalTurn(turn)) {
+            return false;
+        }
+
+        applyTurn(turn);
+        return true;
+    }
+
+    /**
+     * Makes a complete turn from {@link MoveGenerator#getTurns(Game, long[])}
+     * without validating it, capturing every checker of a multiple skip at
+     * once. The turn always passes to the other player, and is taken back
+     * with a single call to {@link #unmakeMove()}. If assertions are enabled,
+     * a turn that is not legal throws an {@link AssertionError}.
+     *
+     * @param turn the packed turn.
+     * @see {@link #makeTurn(long)}, {@link #unmakeMove()}
+     */
+    public void applyTurn(long turn) {
+
+        assert isLegalTurn(turn) : "invalid turn " + Long.toHexString(turn)
+                + " in " + getGameState();
+
+        move(MoveGenerator.getTurnStart(turn), MoveGenerator.getTurnEnd(turn),
+                MoveGenerator.getCaptured(turn));
+        isP1Turn = !isP1Turn;
+        skipIndex = -1;
+    }
+
+    /**
+     * Checks if a turn is one of the turns available in the current state.
+     *
+     * @param turn the packed turn.
+     * @return true if the turn is legal.
+     */
+    private boolean isLegalTurn(long turn) {
+        long[] turns = new long[MoveGenerator.MAX_TURNS];
+        int n = MoveGenerator.getTurns(this, turns);
+        for (int i = 0; i < n; i++) {
+            if (turns[i] == turn) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves a checker, removes the captured checkers and crowns the checker
+     * if needed, then pushes the record needed to take it back. The turn and
+     * skip index are left for the caller to update.
+     *
+     * @param startIndex the index of the checker to move.
+     * @param endIndex   the index the checker ends on.
+     * @param captured   the bitboard of checkers to remove.
+     * @return the undo record that was pushed.
+     */
+    private long move(int startIndex, int endIndex, int captured) {
+
+        // Remember the turn and which captured checkers were kings
+        long record = MoveGenerator.encodeTurn(startIndex, endIndex, captured,
+                false) | ((long) (skipIndex + 1) << 55)
+                | ((isP1Turn ? 1L : 0L) << 61);
+        int kings = board.getKingMask(), bit = 0;
+        for (int c = captured; c != 0; c &= c - 1, bit++) {
+            if ((kings & c & -c) != 0) {
+                record |= 1L << (43 + bit);
+            }
+        }
+
+        // Move the checker and remove the captured ones
+        int id = board.get(startIndex);
+        board.set(startIndex, Board.EMPTY);
+        for (int c = captured; c != 0; c &= c - 1) {
+            board.set(Integer.numberOfTrailingZeros(c), Board.EMPTY);
+        }
+
+        // Make the checker a king if necessary
+        if (id == Board.WHITE_CHECKER && Board.isCrowningTile(endIndex, false)) {
+            id = Board.WHITE_KING;
+            record |= PROMOTED;
+        } else if (id == Board.BLACK_CHECKER && Board.isCrowningTile(endIndex, true)) {
+            id = Board.BLACK_KING;
+            record |= PROMOTED;
+        }
+        board.set(endIndex, id);
+
+        // Remember how to take the move back
+        if (undoCount == undo.length) {
+            this.undo = Arrays.copyOf(undo, undo.length * 2);
+        }
+        undo[undoCount++] = record;
+
+        return record;
+    }
+
+    /**
+     * Takes back the last move made with {@link #makeMove(int, int)},
+     * {@link #applyMove(int, int)} or {@link #applyTurn(long)}, restoring the
+     * captured checkers, the checker that moved (un-crowning it if needed),
+     * the turn and the skip index.
+     *
+     * @return true if a move was taken back, false if there were no moves to
+     * take back.
+     */
+    public boolean unmakeMove() {
+
+        // Nothing to take back
+        if (undoCount == 0) {
+            return false;
+        }
+
+        // Move the checker back
+        long record = undo[--undoCount];
+        int startIndex = MoveGenerator.getTurnStart(record);
+        int endIndex = MoveGenerator.getTurnEnd(record);
+        int id = board.get(endIndex);
+        if ((record & PROMOTED) != 0) {
+            id = (id == Board.BLACK_KING) ? Board.BLACK_CHECKER : Board.WHITE_CHECKER;
+        }
+        board.set(endIndex, Board.EMPTY);
+        board.set(startIndex, id);
+
+        // Put back the captured checkers
+        boolean isBlack = (id == Board.BLACK_CHECKER || id == Board.BLACK_KING);
+        int checker = isBlack ? Board.WHITE_CHECKER : Board.BLACK_CHECKER;
+        int king = isBlack ? Board.WHITE_KING : Board.BLACK_KING;
+        int bit = 0;
+        for (int c = MoveGenerator.getCaptured(record); c != 0; c &= c - 1, bit++) {
+            boolean wasKing = (record & (1L << (43 + bit))) != 0;
+            board.set(Integer.numberOfTrailingZeros(c), wasKing ? king : checker);
+        }
+
+        // Restore the turn
+        this.skipIndex = (int) ((record >>> 55) & 63) - 1;
+        this.isP1Turn = (record & (1L << 61)) != 0;
 
         return true;
     }
 
+    /**
+     * Gets the number of moves that can be taken back with
+     * {@link #unmakeMove()}.
+     *
+     * @return the number of moves made since the game was started or set.
+     */
+    public int getMoveCount() {
+        return undoCount;
+    }
+
+    /**
+     * Gets a move that can be taken back, in the order they were made. A
+     * complete turn made with {@link #applyTurn(long)} is a single move.
+     *
+     * @param index the index of the move, from 0 to
+     *              {@link #getMoveCount()} - 1.
+     * @return the move as a packed turn (the start, end and captured
+     * checkers, and if the checker was crowned).
+     */
+    public long getMove(int index) {
+        return undo[index] & (PROMOTED | (PROMOTED - 1));
+    }
+
+    /**
+     * Checks which player made a move that can be taken back.
+     *
+     * @param index the index of the move.
+     * @return true if player 1 made the move.
+     */
+    boolean isP1Move(int index) {
+        return (undo[index] & (1L << 61)) != 0;
+    }
+
     /**
      * Gets a copy of the current board state.
      *
@@ -133,6 +357,16 @@ public class Game {
         return board.copy();
     }
 
+    /**
+     * Gets the current board state without copying it. The board must not be
+     * modified; use {@link #getBoard()} to get a board that can be changed.
+     *
+     * @return a reference to the current game board state.
+     */
+    public Board getBoardReference() {
+        return board;
+    }
+
     /**
      * Determines if the game is over. The game is over if one or both players
      * cannot make a single move during their turn.
@@ -142,30 +376,18 @@ public class Game {
     public boolean isGameOver() {
 
         // Ensure there is at least one of each checker
-        List<Point> black = board.find(Board.BLACK_CHECKER);
-        black.addAll(board.find(Board.BLACK_KING));
-        if (black.isEmpty()) {
+        int black = board.getBlackMask();
+        if (black == 0) {
             return true;
         }
-        List<Point> white = board.find(Board.WHITE_CHECKER);
-        white.addAll(board.find(Board.WHITE_KING));
-        if (white.isEmpty()) {
+        int white = board.getWhiteMask();
+        if (white == 0) {
             return true;
         }
 
-        //вообще убрать можно
         // Check that the current player can move
-        List<Point> test = isP1Turn ? black : white;
-        for (Point p : test) {
-            int i = Board.toTileIndex(p);
-            if (!MoveGenerator.getMoves(board, i).isEmpty() ||
-                    !MoveGenerator.getSkips(board, i).isEmpty()) {
-                return false;
-            }
-        }
-
-        // No moves
-        return true;
+        return MoveGenerator.getMovers(board, isP1Turn) == 0 &&
+                MoveGenerator.getJumpers(board, isP1Turn) == 0;
     }
 
     public boolean isP1Turn() {
@@ -180,6 +402,18 @@ public class Game {
         return skipIndex;
     }
 
+    /**
+     * Gets the Zobrist hash of the game state, which covers the board, the
+     * player to move and the pending skip. The board part of the hash is
+     * updated incrementally as moves are made.
+     *
+     * @return the 64-bit hash of the current game state.
+     * @see {@link Zobrist}
+     */
+    public long getHash() {
+        return board.getHash() ^ Zobrist.state(isP1Turn, skipIndex);
+    }
+
     /**
      * Gets the current game state as a string of data that can be parsed by
      * {@link #setGameState(String)}.
@@ -221,10 +455,9 @@ public class Game {
         // Update the board
         int n = state.length();
         for (int i = 0; i < 32 && i < n; i++) {
-            try {
-                int id = Integer.parseInt("" + state.charAt(i));
+            int id = Character.digit(state.charAt(i), 10);
+            if (id >= 0) {
                 this.board.set(i, id);
-            } catch (NumberFormatException ignored) {
             }
         }
 
@@ -240,4 +473,54 @@ public class Game {
             }
         }
     }
+
+    /**
+     * Writes the current game state to a buffer as {@link #STATE_SIZE} bytes
+     * that can be read by {@link #setGameState(ByteBuffer)}. Unlike
+     * {@link #getGameState()}, this creates no objects.
+     *
+     * @param buffer the buffer to write to, at its position.
+     */
+    public void getGameState(ByteBuffer buffer) {
+        buffer.putInt(board.getOccupiedMask());
+        buffer.putInt(board.getBlackMask());
+        buffer.putInt(board.getKingMask());
+        buffer.put((byte) ((isP1Turn ? 0x80 : 0) | (skipIndex + 1)));
+    }
+
+    /**
+     * Reads a game state written by {@link #getGameState(ByteBuffer)}. The
+     * moves made before can no longer be taken back.
+     *
+     * @param buffer the buffer to read from, at its position.
+     * @throws IllegalArgumentException if the bytes are not a game state.
+     */
+    public void setGameState(ByteBuffer buffer) {
+
+        // Check the bitboards agree before changing anything
+        int occupied = buffer.getInt(), black = buffer.getInt();
+        int kings = buffer.getInt(), info = buffer.get();
+        int skipIndex = (info & 0x7F) - 1;
+        if ((black & ~occupied) != 0 || (kings & ~occupied) != 0
+                || skipIndex > 31) {
+            throw new IllegalArgumentException("invalid game state");
+        }
+
+        setState(Board.fromMasks(black, occupied & ~black, kings),
+                (info & 0x80) != 0, skipIndex);
+    }
+
+    /**
+     * Replaces the game state, forgetting the moves made before.
+     *
+     * @param board     the new board (not copied).
+     * @param isP1Turn  the flag indicating if it is player 1's turn.
+     * @param skipIndex the index of the skip that must be continued, or -1.
+     */
+    void setState(Board board, boolean isP1Turn, int skipIndex) {
+        this.board = board;
+        this.isP1Turn = isP1Turn;
+        this.skipIndex = skipIndex;
+        this.undoCount = 0;
+    }
 }
@@ -0,0 +1,546 @@
+/* Description: This class records the moves of games being played in a file
+ * as they are made, so the games can be resumed after the program stops.
+ */
+
+package model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import ai.MoveGenerator;
+
+/**
+ * The {@code GameLog} class keeps games being played safe in an append-only
+ * file. Each game has an id. A game is logged by its state when it starts
+ * or is set ({@link #setGameState(int, Game)}), then by each move made
+ * ({@link #logMove(int, long)}), until it is ended ({@link #endGame(int)}).
+ * <p>
+ * Logging a move only queues a few bytes: a background thread writes the
+ * queued records and forces them to the disk, at most once every sync
+ * interval, so a move is never slowed down by the disk. If the program
+ * stops, at most the moves of the last sync interval are lost.
+ * <p>
+ * When a log is opened, the games that were not ended are replayed from the
+ * file ({@link #getGames()}). A record that was not completely written, or
+ * whose checksum does not match, ends the log: it and anything after it are
+ * dropped. The log is then rewritten with only the games that were not
+ * ended, so it does not keep growing from one run to the next.
+ * <p>
+ * The file starts with {@link #MAGIC} as a big-endian int. Each record is a
+ * type byte, the id of the game as a big-endian int, the data of the record
+ * and the CRC-32 of the preceding bytes of the record as a big-endian int.
+ * The data of a state record is the {@link Game#STATE_SIZE} bytes from
+ * {@link Game#getGameState(ByteBuffer)}. The data of a move is its start
+ * tile (with the top bit set if the checker was crowned), its end tile and
+ * the bitboard of captured checkers as a big-endian int. An end record has
+ * no data.
+ */
+public class GameLog implements Closeable {
+
+    /**
+     * The number that starts every file ("ACGL").
+     */
+    public static final int MAGIC = 0x4143474C;
+
+    /**
+     * The default time between forcing records to the disk, in milliseconds.
+     */
+    public static final long DEFAULT_SYNC_INTERVAL = 50;
+
+    /**
+     * The type of a record setting the state of a game.
+     */
+    private static final byte STATE = 1;
+
+    /**
+     * The type of a record of a move.
+     */
+    private static final byte MOVE = 2;
+
+    /**
+     * The type of a record ending a game.
+     */
+    private static final byte END = 3;
+
+    /**
+     * The number of bytes of the data of a move record.
+     */
+    private static final int MOVE_SIZE = 6;
+
+    /**
+     * The number of bytes of a record besides its data: the type, the game id
+     * and the checksum.
+     */
+    private static final int RECORD_OVERHEAD = 9;
+
+    /**
+     * The file being written.
+     */
+    private final FileChannel channel;
+
+    /**
+     * The games that were not ended when the log was opened, by id.
+     */
+    private final Map<Integer, Game> games;
+
+    /**
+     * The minimum time between forcing records to the disk, in milliseconds.
+     */
+    private final long syncInterval;
+
+    /**
+     * The thread writing records.
+     */
+    private final Thread writer;
+
+    /**
+     * The records waiting to be written, guarded by this log.
+     */
+    private List<byte[]> pending = new ArrayList<>();
+
+    /**
+     * The number of records logged.
+     */
+    private long queued;
+
+    /**
+     * The number of records written and forced to the disk.
+     */
+    private long synced;
+
+    /**
+     * The id of the next game started.
+     */
+    private int nextId;
+
+    /**
+     * The flag indicating the log was closed.
+     */
+    private boolean isClosed;
+
+    /**
+     * The error that stopped the writer, if any.
+     */
+    private IOException error;
+
+    /**
+     * Opens a log, creating it if needed, with the default sync interval.
+     *
+     * @param file the file of the log.
+     * @throws IOException if the file cannot be read or written.
+     */
+    public GameLog(File file) throws IOException {
+        this(file, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * Opens a log, creating it if needed. The games that were not ended are
+     * replayed, and the file is rewritten with only those games.
+     *
+     * @param file         the file of the log.
+     * @param syncInterval the minimum time between forcing records to the
+     *                     disk, in milliseconds.
+     * @throws IOException if the file cannot be read or written, or is not a
+     *                     log.
+     */
+    public GameLog(File file, long syncInterval) throws IOException {
+
+        // Replay the games, and keep only the ones not ended
+        this.games = file.exists() ? replay(file) : new LinkedHashMap<>();
+        this.nextId = 0;
+        for (int id : games.keySet()) {
+            this.nextId = Math.max(nextId, id + 1);
+        }
+        File temp = new File(file.getPath() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            List<byte[]> records = new ArrayList<>();
+            for (Map.Entry<Integer, Game> entry : games.entrySet()) {
+                addGame(records, entry.getKey(), entry.getValue());
+            }
+            ByteBuffer header = ByteBuffer.allocate(4).putInt(MAGIC);
+            header.flip();
+            write(out, header);
+            write(out, encode(records));
+            out.force(true);
+        }
+        Files.move(temp.toPath(), file.toPath(),
+                StandardCopyOption.REPLACE_EXISTING,
+                StandardCopyOption.ATOMIC_MOVE);
+
+        // Start writing at the end
+        this.channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.WRITE);
+        this.channel.position(channel.size());
+        this.syncInterval = Math.max(0, syncInterval);
+        this.writer = new Thread(this::writeRecords, "game-log-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Reads the games of a log that were not ended, stopping at the first
+     * record that is incomplete or does not match its checksum. A move that
+     * is not legal in its game is skipped.
+     *
+     * @param file the file of the log.
+     * @return the games, by id, in the order they were started.
+     * @throws IOException if the file cannot be read or is not a log.
+     */
+    public static Map<Integer, Game> replay(File file) throws IOException {
+
+        // Read the whole file
+        ByteBuffer data = ByteBuffer.wrap(Files.readAllBytes(file.toPath()));
+        if (data.remaining() < 4 || data.getInt() != MAGIC) {
+            throw new IOException("not a game log: " + file);
+        }
+
+        // Apply each record until the first that cannot be read
+        Map<Integer, Game> games = new LinkedHashMap<>();
+        CRC32 crc = new CRC32();
+        while (data.remaining() >= RECORD_OVERHEAD) {
+            int start = data.position();
+            byte type = data.get();
+            int size = getDataSize(type);
+            if (size < 0 || data.remaining() < size + RECORD_OVERHEAD - 1) {
+                break;
+            }
+            crc.reset();
+            ByteBuffer record = data.duplicate();
+            record.position(start).limit(start + size + 5);
+            crc.update(record);
+            int id = data.getInt();
+            ByteBuffer recordData = data.slice();
+            recordData.limit(size);
+            data.position(data.position() + size);
+            if ((int) crc.getValue() != data.getInt()) {
+                break;
+            }
+
+            // Update the game
+            Game game = games.get(id);
+            if (type == STATE) {
+                Game newGame = new Game();
+                try {
+                    newGame.setGameState(recordData);
+                    games.put(id, newGame);
+                } catch (IllegalArgumentException ignored) {
+                }
+            } else if (type == MOVE && game != null) {
+                applyMove(game, recordData);
+            } else if (type == END) {
+                games.remove(id);
+            }
+        }
+
+        return games;
+    }
+
+    /**
+     * Gets the number of bytes of the data of a record.
+     *
+     * @param type the type of the record.
+     * @return the number of bytes, or -1 if the type is not valid.
+     */
+    private static int getDataSize(byte type) {
+        switch (type) {
+            case STATE:
+                return Game.STATE_SIZE;
+            case MOVE:
+                return MOVE_SIZE;
+            case END:
+                return 0;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Makes a logged move in a game, if it is legal.
+     *
+     * @param game the game.
+     * @param data the data of the move record.
+     */
+    private static void applyMove(Game game, ByteBuffer data) {
+        int start = data.get() & 0xFF, end = data.get() & 0xFF;
+        int captured = data.getInt();
+        if (Integer.bitCount(captured) <= 1) {
+            game.makeMove(start & 0x7F, end);
+        } else {
+            game.makeTurn(MoveGenerator.encodeTurn(start & 0x7F, end,
+                    captured, (start & 0x80) != 0));
+        }
+    }
+
+    /**
+     * Gets the games that were not ended when the log was opened. Each game
+     * can take back the moves made since its state was last set.
+     *
+     * @return the games, by id, in the order they were started.
+     */
+    public Map<Integer, Game> getGames() {
+        return Collections.unmodifiableMap(games);
+    }
+
+    /**
+     * Starts logging a new game.
+     *
+     * @param game the game, which is logged by its current state.
+     * @return the id of the game.
+     */
+    public int startGame(Game game) {
+        int id;
+        synchronized (this) {
+            id = nextId++;
+        }
+        setGameState(id, game);
+        return id;
+    }
+
+    /**
+     * Logs the state of a game, such as after it is restarted. The moves
+     * logged before are no longer needed.
+     *
+     * @param id   the id of the game.
+     * @param game the game, in its new state.
+     */
+    public void setGameState(int id, Game game) {
+        append(getStateRecord(id, game));
+    }
+
+    /**
+     * Logs a move made in a game.
+     *
+     * @param id   the id of the game.
+     * @param move the move, from {@link Game#getMove(int)}.
+     */
+    public void logMove(int id, long move) {
+        append(getMoveRecord(id, move));
+    }
+
+    /**
+     * Logs the end of a game, which will not be replayed.
+     *
+     * @param id the id of the game.
+     */
+    public void endGame(int id) {
+        ByteBuffer record = ByteBuffer.allocate(5);
+        record.put(END).putInt(id);
+        append(record.array());
+    }
+
+    /**
+     * Adds the records that log a game from its starting position.
+     *
+     * @param records the list to add the records to.
+     * @param id      the id of the game.
+     * @param game    the game.
+     */
+    private static void addGame(List<byte[]> records, int id, Game game) {
+        Game start = game.copy();
+        for (int i = start.getMoveCount(); i > 0; i--) {
+            start.unmakeMove();
+        }
+        records.add(getStateRecord(id, start));
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            records.add(getMoveRecord(id, game.getMove(i)));
+        }
+    }
+
+    /**
+     * Makes the record of the state of a game.
+     *
+     * @param id   the id of the game.
+     * @param game the game.
+     * @return the record, without its checksum.
+     */
+    private static byte[] getStateRecord(int id, Game game) {
+        ByteBuffer record = ByteBuffer.allocate(5 + Game.STATE_SIZE);
+        record.put(STATE).putInt(id);
+        game.getGameState(record);
+        return record.array();
+    }
+
+    /**
+     * Makes the record of a move.
+     *
+     * @param id   the id of the game.
+     * @param move the move, from {@link Game#getMove(int)}.
+     * @return the record, without its checksum.
+     */
+    private static byte[] getMoveRecord(int id, long move) {
+        ByteBuffer record = ByteBuffer.allocate(5 + MOVE_SIZE);
+        record.put(MOVE).putInt(id);
+        record.put((byte) (MoveGenerator.getTurnStart(move)
+                | (MoveGenerator.isPromotion(move) ? 0x80 : 0)));
+        record.put((byte) MoveGenerator.getTurnEnd(move));
+        record.putInt(MoveGenerator.getCaptured(move));
+        return record.array();
+    }
+
+    /**
+     * Queues a record for the writer, without waiting for it to be written.
+     * Records logged after the log was closed or failed are dropped.
+     *
+     * @param record the record, without its checksum.
+     */
+    private synchronized void append(byte[] record) {
+        if (isClosed || error != null) {
+            return;
+        }
+        pending.add(record);
+        queued++;
+
+        // Only wake the writer if it is waiting for the first record
+        if (pending.size() == 1) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Waits until every record logged so far is forced to the disk.
+     *
+     * @throws IOException if the records could not be written.
+     */
+    public synchronized void flush() throws IOException {
+        long target = queued;
+        try {
+            while (synced < target && error == null && writer.isAlive()) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Writes the records logged so far and closes the file. Records logged
+     * afterwards are dropped.
+     *
+     * @throws IOException if the records could not be written.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            this.isClosed = true;
+            notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+        synchronized (this) {
+            if (error != null) {
+                throw error;
+            }
+        }
+    }
+
+    /**
+     * Writes the queued records in batches until the log is closed, forcing
+     * each batch to the disk.
+     */
+    private void writeRecords() {
+        long lastSync = 0;
+        while (true) {
+
+            // Wait for records, and for the sync interval to pass
+            List<byte[]> batch;
+            synchronized (this) {
+                try {
+                    while (pending.isEmpty() && !isClosed) {
+                        wait();
+                    }
+                    long delay = lastSync + syncInterval
+                            - System.currentTimeMillis();
+                    while (delay > 0 && !isClosed) {
+                        wait(delay);
+                        delay = lastSync + syncInterval
+                                - System.currentTimeMillis();
+                    }
+                } catch (InterruptedException e) {
+                    this.isClosed = true;
+                }
+                if (pending.isEmpty()) {
+                    notifyAll();
+                    return;
+                }
+                batch = pending;
+                this.pending = new ArrayList<>();
+            }
+
+            // Write the batch
+            try {
+                write(channel, encode(batch));
+                channel.force(false);
+            } catch (IOException e) {
+                synchronized (this) {
+                    this.error = e;
+                    notifyAll();
+                }
+                return;
+            }
+            lastSync = System.currentTimeMillis();
+            synchronized (this) {
+                this.synced += batch.size();
+                notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Puts records into a buffer, each followed by its checksum.
+     *
+     * @param records the records, without their checksums.
+     * @return the buffer, ready to be written.
+     */
+    private static ByteBuffer encode(List<byte[]> records) {
+        int size = 0;
+        for (byte[] record : records) {
+            size += record.length + 4;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (byte[] record : records) {
+            crc.reset();
+            crc.update(record, 0, record.length);
+            buffer.put(record).putInt((int) crc.getValue());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes all of a buffer to a file.
+     *
+     * @param out    the file.
+     * @param buffer the buffer.
+     * @throws IOException if the file cannot be written.
+     */
+    private static void write(FileChannel out, ByteBuffer buffer)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+/* Description: This class converts positions and turns to and from the
+ * standard text formats used by other checkers programs.
+ */
+
+package model;
+
+import ai.MoveGenerator;
+
+/**
+ * The {@code Pdn} class reads and writes positions in the standard checkers
+ * FEN format and turns in the PDN format, so games can be exchanged with
+ * other programs (see {@link PdnGame} for whole games).
+ * <p>
+ * Squares are numbered from 1 to 32 as usual, which are the tile indices
+ * plus one: black starts on squares 1 to 12 and moves first. A turn is
+ * written as its squares separated by {@code -} for a move or {@code x} for
+ * skips ({@code 11-15}, {@code 22x15} or {@code 15x24x31}; the squares
+ * between the start and end of a multiple skip may be left out).
+ * <p>
+ * A FEN gives the player to move and the squares of each player's checkers,
+ * with kings marked by {@code K}, such as {@code B:W18,24,K10:B12,16,K22}.
+ * A range of squares such as {@code 1-12} is also read.
+ */
+public final class Pdn {
+
+    /**
+     * The value returned for a turn that is not legal.
+     */
+    public static final long NO_TURN = -1;
+
+    /**
+     * The result of a game won by black.
+     */
+    public static final String BLACK_WINS = "1-0";
+
+    /**
+     * The result of a game won by white.
+     */
+    public static final String WHITE_WINS = "0-1";
+
+    /**
+     * The result of a drawn game.
+     */
+    public static final String DRAW = "1/2-1/2";
+
+    /**
+     * The result of a game that is not over or has no known result.
+     */
+    public static final String UNKNOWN = "*";
+
+    private Pdn() {}
+
+    /**
+     * Writes a position as a FEN. A skip that must be continued is not part
+     * of a FEN and is left out.
+     *
+     * @param game the game to write the position of.
+     * @return the FEN.
+     */
+    public static String toFen(Game game) {
+        Board board = game.getBoardReference();
+        return (game.isP1Turn() ? "B" : "W")
+                + ":W" + toSquares(board.getWhiteMask(), board.getKingMask())
+                + ":B" + toSquares(board.getBlackMask(), board.getKingMask());
+    }
+
+    /**
+     * Lists the squares of a player's checkers, kings after checkers.
+     *
+     * @param checkers the bitboard of the checkers.
+     * @param kings    the bitboard of kings.
+     * @return the squares separated by commas.
+     */
+    private static String toSquares(int checkers, int kings) {
+        StringBuilder squares = new StringBuilder();
+        for (int pass = 0; pass < 2; pass++) {
+            int tiles = checkers & ((pass == 0) ? ~kings : kings);
+            for (; tiles != 0; tiles &= tiles - 1) {
+                if (squares.length() > 0) {
+                    squares.append(',');
+                }
+                squares.append((pass == 0) ? "" : "K")
+                        .append(Integer.numberOfTrailingZeros(tiles) + 1);
+            }
+        }
+        return squares.toString();
+    }
+
+    /**
+     * Reads a position from a FEN.
+     *
+     * @param fen the FEN, optionally in quotes and ending with a period.
+     * @return a new game in the position.
+     * @throws IllegalArgumentException if the FEN cannot be read.
+     */
+    public static Game fromFen(String fen) {
+
+        // Remove the quotes and final period some programs add
+        String s = fen.trim();
+        if (s.length() >= 2 && s.startsWith("\"") && s.endsWith("\"")) {
+            s = s.substring(1, s.length() - 1).trim();
+        }
+        if (s.endsWith(".")) {
+            s = s.substring(0, s.length() - 1);
+        }
+        String[] parts = s.split(":");
+        if (parts.length == 0 || !parts[0].trim().matches("[BWbw]")) {
+            throw new IllegalArgumentException("invalid FEN: " + fen);
+        }
+
+        // Add the checkers of each player
+        int[] checkers = new int[2];
+        int kings = 0;
+        for (int i = 1; i < parts.length; i++) {
+            String part = parts[i].trim();
+            if (part.isEmpty() || "BWbw".indexOf(part.charAt(0)) < 0) {
+                throw new IllegalArgumentException("invalid FEN: " + fen);
+            }
+            int color = Character.toUpperCase(part.charAt(0)) == 'B' ? 0 : 1;
+            for (String item : part.substring(1).split(",")) {
+                item = item.trim();
+                if (item.isEmpty()) {
+                    continue;
+                }
+                boolean isKing = Character.toUpperCase(item.charAt(0)) == 'K';
+                int tiles = toTiles(isKing ? item.substring(1) : item, fen);
+                checkers[color] |= tiles;
+                kings |= isKing ? tiles : 0;
+            }
+        }
+        if ((checkers[0] & checkers[1]) != 0) {
+            throw new IllegalArgumentException("invalid FEN: " + fen);
+        }
+
+        Game game = new Game();
+        game.setState(Board.fromMasks(checkers[0], checkers[1], kings),
+                Character.toUpperCase(parts[0].trim().charAt(0)) == 'B', -1);
+        return game;
+    }
+
+    /**
+     * Gets the tiles of a square or a range of squares (e.g. {@code 1-12}).
+     *
+     * @param squares the square or range.
+     * @param fen     the FEN being read, for the error message.
+     * @return the bitboard of tiles.
+     * @throws IllegalArgumentException if a square is not valid.
+     */
+    private static int toTiles(String squares, String fen) {
+        String[] range = squares.split("-");
+        try {
+            int first = Integer.parseInt(range[0].trim());
+            int last = (range.length > 1) ? Integer.parseInt(range[1].trim())
+                    : first;
+            if (range.length > 2 || first < 1 || last > 32 || first > last) {
+                throw new IllegalArgumentException("invalid FEN: " + fen);
+            }
+            return (int) (((1L << last) - 1) & ~((1L << (first - 1)) - 1));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("invalid FEN: " + fen);
+        }
+    }
+
+    /**
+     * Writes a turn as its start and end squares.
+     *
+     * @param turn the packed turn from {@link MoveGenerator}.
+     * @return the turn, such as {@code 11-15} or {@code 15x24}.
+     */
+    public static String toString(long turn) {
+        return (MoveGenerator.getTurnStart(turn) + 1)
+                + (MoveGenerator.getCaptured(turn) != 0 ? "x" : "-")
+                + (MoveGenerator.getTurnEnd(turn) + 1);
+    }
+
+    /**
+     * Finds the turn written as squares in a game. A multiple skip written
+     * with only its start and end squares is ambiguous if there are several
+     * ways to make it; the first one found is returned.
+     *
+     * @param game the game.
+     * @param move the squares of the turn (e.g. {@code 15x24x31}).
+     * @return the packed turn, or {@link #NO_TURN} if it is not legal.
+     */
+    public static long parseTurn(Game game, String move) {
+
+        // Turn the squares into tiles, and find the checkers skipped
+        if (!move.matches("\\d{1,2}([-x]\\d{1,2})+")) {
+            return NO_TURN;
+        }
+        String[] squares = move.split("[-x]");
+        int[] tiles = new int[squares.length];
+        for (int i = 0; i < squares.length; i++) {
+            tiles[i] = Integer.parseInt(squares[i]) - 1;
+            if (!Board.isValidTileIndex(tiles[i])) {
+                return NO_TURN;
+            }
+        }
+        int captured = 0;
+        for (int i = 1; i < tiles.length && move.indexOf('x') >= 0; i++) {
+            captured |= 1 << getMiddle(tiles[i - 1], tiles[i]);
+        }
+
+        // Find the turn with the same start, end and skips. If only the start
+        // and end are given, a multiple skip between them is also accepted.
+        long[] turns = new long[MoveGenerator.MAX_TURNS];
+        int n = MoveGenerator.getTurns(game, turns);
+        long found = NO_TURN;
+        for (int i = 0; i < n; i++) {
+            if (MoveGenerator.getTurnStart(turns[i]) != tiles[0]
+                    || MoveGenerator.getTurnEnd(turns[i])
+                    != tiles[tiles.length - 1]) {
+                continue;
+            }
+            if (captured == MoveGenerator.getCaptured(turns[i])) {
+                return turns[i];
+            } else if (tiles.length == 2 && found == NO_TURN) {
+                found = turns[i];
+            }
+        }
+
+        return found;
+    }
+
+    /**
+     * Gets the tile between two tiles a skip apart.
+     *
+     * @param start the tile skipped from.
+     * @param end   the tile skipped to.
+     * @return the index of the tile skipped over.
+     */
+    private static int getMiddle(int start, int end) {
+        int y = (start / 4 + end / 4) / 2;
+        int x = (2 * (start % 4) + (start / 4 + 1) % 2
+                + 2 * (end % 4) + (end / 4 + 1) % 2) / 2;
+        return y * 4 + x / 2;
+    }
+
+    /**
+     * Reads the result at the end of a game's moves. Besides the standard
+     * results, {@code 2-0}, {@code 0-2} and {@code 1-1} are read as a win for
+     * black, a win for white and a draw.
+     *
+     * @param token the text to read.
+     * @return the standard result ({@link #BLACK_WINS}, {@link #WHITE_WINS},
+     * {@link #DRAW} or {@link #UNKNOWN}), or null if the text is not a
+     * result.
+     */
+    public static String parseResult(String token) {
+        switch (token) {
+            case "1-0":
+            case "2-0":
+                return BLACK_WINS;
+            case "0-1":
+            case "0-2":
+                return WHITE_WINS;
+            case "1/2-1/2":
+            case "1-1":
+                return DRAW;
+            case "*":
+                return UNKNOWN;
+            default:
+                return null;
+        }
+    }
+}
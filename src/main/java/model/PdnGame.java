@@ -0,0 +1,216 @@
+/* Description: This class represents a game recorded in the PDN format, with
+ * its tags, turns and result.
+ */
+
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import ai.MoveGenerator;
+
+/**
+ * The {@code PdnGame} class holds a game as it is written in a PDN file: its
+ * tags (such as {@code Event} or {@code FEN}), the text of each turn and the
+ * result. It can be created from a {@link Game} that was played
+ * ({@link #fromGame(Game, String)}), replayed into a {@link Game}
+ * ({@link #toGame()}) and written as PDN text ({@link #toString()}). Files
+ * of games are read with a {@link PdnReader}.
+ */
+public class PdnGame {
+
+    /**
+     * The length of the lines of turns written.
+     */
+    private static final int LINE_LENGTH = 79;
+
+    /**
+     * The tags, in the order they were added.
+     */
+    private final Map<String, String> tags = new LinkedHashMap<>();
+
+    /**
+     * The turns, as squares (e.g. {@code 11-15}).
+     */
+    private final List<String> moves = new ArrayList<>();
+
+    /**
+     * The result of the game.
+     */
+    private String result = Pdn.UNKNOWN;
+
+    /**
+     * Records the moves made in a game. If the game was set up rather than
+     * started from the beginning, the starting position is added as a
+     * {@code FEN} tag. The moves of a turn made one skip at a time are
+     * joined into a single turn, and every square landed on by a multiple
+     * skip is written, since two ways of skipping can have the same start
+     * and end.
+     *
+     * @param game   the game played.
+     * @param result the result ({@link Pdn#BLACK_WINS}, {@link Pdn#WHITE_WINS},
+     *               {@link Pdn#DRAW} or {@link Pdn#UNKNOWN}).
+     * @return the record of the game.
+     */
+    public static PdnGame fromGame(Game game, String result) {
+
+        // Find the starting position
+        PdnGame pdn = new PdnGame();
+        Game start = game.copy();
+        for (int i = start.getMoveCount(); i > 0; i--) {
+            start.unmakeMove();
+        }
+        if (!start.getGameState().equals(new Game().getGameState())) {
+            pdn.setTag("SetUp", "1");
+            pdn.setTag("FEN", Pdn.toFen(start));
+        }
+        pdn.setTag("Result", result);
+        pdn.result = result;
+
+        // Find the board before each multiple skip made as a complete turn
+        int n = game.getMoveCount();
+        Board[] boards = new Board[n];
+        Game back = game.copy();
+        for (int i = n - 1; i >= 0; i--) {
+            back.unmakeMove();
+            if (Integer.bitCount(MoveGenerator.getCaptured(game.getMove(i))) > 1) {
+                boards[i] = back.getBoard();
+            }
+        }
+
+        // Join the skips of each turn
+        StringBuilder turn = new StringBuilder();
+        int last = -1;
+        for (int i = 0; i < n; i++) {
+            long move = game.getMove(i);
+            int startIndex = MoveGenerator.getTurnStart(move);
+            boolean isSkip = MoveGenerator.getCaptured(move) != 0;
+            boolean continues = i > 0 && isSkip && startIndex == last
+                    && game.isP1Move(i) == game.isP1Move(i - 1)
+                    && MoveGenerator.getCaptured(game.getMove(i - 1)) != 0;
+            if (!continues) {
+                if (turn.length() > 0) {
+                    pdn.moves.add(turn.toString());
+                }
+                turn.setLength(0);
+                turn.append(startIndex + 1);
+            }
+            last = MoveGenerator.getTurnEnd(move);
+            if (boards[i] != null) {
+                for (int tile : MoveGenerator.getPath(boards[i], move)) {
+                    turn.append('x').append(tile + 1);
+                }
+            } else {
+                turn.append(isSkip ? 'x' : '-').append(last + 1);
+            }
+        }
+        if (turn.length() > 0) {
+            pdn.moves.add(turn.toString());
+        }
+
+        return pdn;
+    }
+
+    /**
+     * Replays the game from its starting position.
+     *
+     * @return the game after every turn.
+     * @throws IllegalArgumentException if the starting position or a turn is
+     * not valid.
+     */
+    public Game toGame() {
+        String fen = tags.get("FEN");
+        Game game = (fen != null) ? Pdn.fromFen(fen) : new Game();
+        for (String move : moves) {
+            long turn = Pdn.parseTurn(game, move);
+            if (turn == Pdn.NO_TURN) {
+                throw new IllegalArgumentException("illegal turn: " + move);
+            }
+            game.applyTurn(turn);
+        }
+        return game;
+    }
+
+    public String getTag(String name) {
+        return tags.get(name);
+    }
+
+    public void setTag(String name, String value) {
+        tags.put(name, value);
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+
+    /**
+     * Gets the turns of the game, which can be changed.
+     *
+     * @return the list of turns, as squares.
+     */
+    public List<String> getMoves() {
+        return moves;
+    }
+
+    public String getResult() {
+        return result;
+    }
+
+    public void setResult(String result) {
+        this.result = (result == null) ? Pdn.UNKNOWN : result;
+    }
+
+    /**
+     * Writes the game as PDN text: the tags, one per line, then the
+     * numbered turns and the result.
+     *
+     * @return the PDN text of the game.
+     */
+    @Override
+    public String toString() {
+
+        // Add the tags
+        StringBuilder pdn = new StringBuilder();
+        for (Map.Entry<String, String> tag : tags.entrySet()) {
+            pdn.append('[').append(tag.getKey()).append(" \"")
+                    .append(tag.getValue().replace("\"", "'"))
+                    .append("\"]\n");
+        }
+        if (!tags.isEmpty()) {
+            pdn.append('\n');
+        }
+
+        // Add the turns, numbered from black's, then the result
+        String fen = tags.get("FEN");
+        boolean isBlack = (fen == null) || Pdn.fromFen(fen).isP1Turn();
+        int lineStart = pdn.length(), number = 1;
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < moves.size(); i++) {
+            if (isBlack) {
+                tokens.add(number + ". " + moves.get(i));
+            } else if (i == 0) {
+                tokens.add(number + "... " + moves.get(i));
+            } else {
+                tokens.add(moves.get(i));
+            }
+            number += isBlack ? 0 : 1;
+            isBlack = !isBlack;
+        }
+        tokens.add(result);
+        for (String token : tokens) {
+            if (pdn.length() > lineStart
+                    && pdn.length() - lineStart + token.length() >= LINE_LENGTH) {
+                pdn.append('\n');
+                lineStart = pdn.length();
+            } else if (pdn.length() > lineStart) {
+                pdn.append(' ');
+            }
+            pdn.append(token);
+        }
+
+        return pdn.append('\n').toString();
+    }
+}
@@ -0,0 +1,156 @@
+/* Description: This class reads the games of a PDN file one at a time.
+ */
+
+package model;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The {@code PdnReader} class reads games in the PDN format from a stream,
+ * one game at a time, so a file of any size can be read with little memory.
+ * <p>
+ * Tags ({@code [Name "value"]}) are kept. Turns are kept as their squares
+ * ({@code 11-15} or {@code 15x24x31}), without checking they are legal (see
+ * {@link PdnGame#toGame()}). Move numbers, annotations such as {@code !} or
+ * {@code ?}, comments in braces and variations in parentheses are ignored. A
+ * game ends with its result, or when the tags of the next game start.
+ */
+public class PdnReader implements Closeable {
+
+    /**
+     * The stream of PDN text.
+     */
+    private final Reader in;
+
+    /**
+     * The game being read.
+     */
+    private PdnGame game = new PdnGame();
+
+    /**
+     * The flag indicating the game being read has turns.
+     */
+    private boolean hasMoves;
+
+    /**
+     * The flag indicating the end of the stream was reached.
+     */
+    private boolean isDone;
+
+    /**
+     * Creates a reader.
+     *
+     * @param in the stream of PDN text (ideally buffered).
+     */
+    public PdnReader(Reader in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads the next game.
+     *
+     * @return the game, or null if there are no more games.
+     * @throws IOException if the stream cannot be read.
+     */
+    public PdnGame next() throws IOException {
+
+        StringBuilder token = new StringBuilder();
+        int depth = 0;
+        while (!isDone) {
+            int c = in.read();
+
+            // A tag starts a new game if the current one has turns
+            if (depth == 0 && c == '[') {
+                PdnGame finished = hasMoves ? startGame() : null;
+                readTag();
+                if (finished != null) {
+                    return finished;
+                }
+                continue;
+            }
+
+            // Skip comments and variations
+            if (depth == 0 && c == '{') {
+                while (c != -1 && c != '}') {
+                    c = in.read();
+                }
+                continue;
+            } else if (c == '(') {
+                depth++;
+                continue;
+            } else if (c == ')') {
+                depth = Math.max(0, depth - 1);
+                continue;
+            } else if (depth > 0 && c != -1) {
+                continue;
+            }
+
+            // Build up a token until the next space
+            if (c != -1 && !Character.isWhitespace(c)) {
+                token.append((char) c);
+                continue;
+            }
+            this.isDone = (c == -1);
+            String t = token.toString();
+            token.setLength(0);
+
+            // A result ends the game
+            String result = Pdn.parseResult(t);
+            if (result != null) {
+                game.setResult(result);
+                return startGame();
+            }
+            t = t.replaceFirst("^\\d+\\.+", "").replaceFirst("[^0-9]+$", "");
+            if (t.matches("\\d+([-x]\\d+)+")) {
+                game.getMoves().add(t);
+                this.hasMoves = true;
+            }
+        }
+
+        // A last game without a result
+        return (hasMoves || !game.getTags().isEmpty()) ? startGame() : null;
+    }
+
+    /**
+     * Starts a new game.
+     *
+     * @return the game that was being read.
+     */
+    private PdnGame startGame() {
+        PdnGame finished = game;
+        this.game = new PdnGame();
+        this.hasMoves = false;
+        return finished;
+    }
+
+    /**
+     * Reads a tag, after its opening bracket, and adds it to the game.
+     *
+     * @throws IOException if the stream cannot be read.
+     */
+    private void readTag() throws IOException {
+        StringBuilder tag = new StringBuilder();
+        boolean quoted = false;
+        for (int c = in.read(); c != -1 && (quoted || c != ']'); c = in.read()) {
+            quoted ^= (c == '"');
+            tag.append((char) c);
+        }
+        String s = tag.toString().trim();
+        int space = s.indexOf(' ');
+        if (space > 0) {
+            String value = s.substring(space + 1).trim();
+            if (value.length() >= 2 && value.startsWith("\"")
+                    && value.endsWith("\"")) {
+                value = value.substring(1, value.length() - 1);
+            }
+            game.setTag(s.substring(0, space), value);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
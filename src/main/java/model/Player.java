@@ -26,6 +26,13 @@ public interface Player {
 	 * @param game	the game to update.
 	 */
 	void updateGame(Game game);
+	
+	/**
+	 * Stops any threads used by this player, once it is no longer needed.
+	 * Players without threads of their own do nothing.
+	 */
+	default void shutdown() {
+	}
 
 	//String getPlayerName();
 	
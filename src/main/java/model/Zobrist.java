@@ -0,0 +1,95 @@
+/* Description: This class holds the random keys used to hash checkers game
+ * states.
+ */
+
+package model;
+
+/**
+ * The {@code Zobrist} class provides the 64-bit keys used to hash a game
+ * state. The hash of a state is the XOR of the key of every checker on the
+ * board, the key of the player to move and the key of the pending skip. This
+ * lets {@link Board} and {@link Game} update the hash incrementally, as
+ * changing a single tile only takes two XOR operations.
+ * <p>
+ * The keys are generated from a fixed seed, so hashes are the same on every
+ * run and can be stored in files.
+ */
+public final class Zobrist {
+
+    /**
+     * The seed used to generate the keys.
+     */
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    /**
+     * The keys for each ID (indexed by ID) on each tile.
+     */
+    private static final long[][] PIECES = new long[8][32];
+
+    /**
+     * The key added when it is player 2's turn.
+     */
+    private static final long WHITE_TO_MOVE;
+
+    /**
+     * The key for a skip that must be continued from each tile.
+     */
+    private static final long[] SKIPS = new long[32];
+
+    static {
+        long seed = SEED;
+        for (int id : new int[]{Board.BLACK_CHECKER, Board.WHITE_CHECKER,
+                Board.BLACK_KING, Board.WHITE_KING}) {
+            for (int i = 0; i < 32; i++) {
+                seed += 0x9E3779B97F4A7C15L;
+                PIECES[id][i] = mix(seed);
+            }
+        }
+        for (int i = 0; i < 32; i++) {
+            seed += 0x9E3779B97F4A7C15L;
+            SKIPS[i] = mix(seed);
+        }
+        seed += 0x9E3779B97F4A7C15L;
+        WHITE_TO_MOVE = mix(seed);
+    }
+
+    private Zobrist() {}
+
+    /**
+     * Gets the key of an ID on a tile.
+     *
+     * @param id        the ID on the tile.
+     * @param tileIndex the index of the tile (from 0 to 31 inclusive).
+     * @return the key, or 0 if the tile is {@link Board#EMPTY}.
+     */
+    public static long piece(int id, int tileIndex) {
+        return (id > 0) ? PIECES[id & 7][tileIndex] : 0;
+    }
+
+    /**
+     * Gets the key for the rest of the game state, besides the board.
+     *
+     * @param isP1Turn  the flag indicating if it is player 1's turn.
+     * @param skipIndex the index of the skip that must be continued, or -1.
+     * @return the key of the turn and skip index.
+     */
+    public static long state(boolean isP1Turn, int skipIndex) {
+        long key = isP1Turn ? 0 : WHITE_TO_MOVE;
+        if (Board.isValidTileIndex(skipIndex)) {
+            key ^= SKIPS[skipIndex];
+        }
+        return key;
+    }
+
+    /**
+     * Scrambles a value with the SplitMix64 finalizer.
+     *
+     * @param z the value to scramble.
+     * @return a well distributed 64-bit value.
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -14,14 +14,17 @@ import java.awt.Point;
 import java.awt.RenderingHints;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.util.Map;
 
 import javax.swing.JButton;
+import javax.swing.SwingWorker;
 import javax.swing.Timer;
 
 import ai.MoveGenerator;
 import model.Board;
 import model.Game;
+import model.GameLog;
 import model.HumanPlayer;
 import model.Player;
 
@@ -69,6 +72,23 @@ public class ClickableBoard extends JButton {
      */
     private Timer timer;
 
+    /**
+     * The worker of the computer player that is thinking, or null. Only one
+     * player thinks at a time, as players are not safe to use from several
+     * threads at once.
+     */
+    private PlayerWorker worker;
+
+    /**
+     * The log the moves of the game are recorded in, or null.
+     */
+    private GameLog log;
+
+    /**
+     * The id of the game in the log.
+     */
+    private int logId;
+
     public ClickableBoard(MainFrame mainFrame) {
         this(mainFrame, new Game(), null, null);
     }
@@ -99,34 +119,114 @@ public class ClickableBoard extends JButton {
 
     private void runPlayer() {
 
+        // Replace any timer that has not fired yet
+        if (timer != null) {
+            timer.stop();
+            this.timer = null;
+        }
+
+        // A player that is still thinking runs this again when it is done
         Player player = getCurrentPlayer();
-        if (player == null || player.isHuman()) {
+        if (player == null || player.isHuman() || worker != null
+                || game.isGameOver()) {
             return;
         }
 
         // Set a timer to run
         this.timer = new Timer(TIMER_DELAY, e -> {
-            getCurrentPlayer().updateGame(game);
-            timer.stop();
-            update();
+            this.timer = null;
+            if (worker == null && player == getCurrentPlayer()) {
+                this.worker = new PlayerWorker(player);
+                this.worker.execute();
+            }
         });
+        this.timer.setRepeats(false);
         this.timer.start();
     }
 
-    public boolean setGameState(boolean testValue, String newState, String expected) {
+    /**
+     * Sets the log the moves of the game are recorded in. The last game in
+     * the log that was not ended is resumed, and any others are ended.
+     * Otherwise, the current game is added to the log.
+     *
+     * @param log the log, or null to stop recording the game.
+     */
+    public void setLog(GameLog log) {
+        this.log = log;
+        if (log == null) {
+            return;
+        }
+
+        // Resume the last game
+        Map<Integer, Game> games = log.getGames();
+        this.logId = -1;
+        for (Map.Entry<Integer, Game> entry : games.entrySet()) {
+            if (logId >= 0) {
+                log.endGame(logId);
+            }
+            this.logId = entry.getKey();
+            this.game = entry.getValue().copy();
+        }
+        if (logId < 0) {
+            this.logId = log.startGame(game);
+        }
+        this.clicked = null;
+        update();
+    }
+
+    /**
+     * Records the current game state in the log, after the game was changed
+     * other than by a move (e.g. it was restarted).
+     */
+    public void logGameState() {
+        if (log != null) {
+            log.setGameState(logId, game);
+        }
+    }
+
+    /**
+     * Records the moves made in a game in the log.
+     *
+     * @param played the game the moves were made in.
+     * @param first  the index of the first move to record.
+     */
+    private void logMoves(Game played, int first) {
+        if (log == null) {
+            return;
+        }
+        for (int i = first; i < played.getMoveCount(); i++) {
+            log.logMove(logId, played.getMove(i));
+        }
+    }
+
+    public boolean setGameState(boolean testValue, ByteBuffer newState, ByteBuffer expected) {
 
         // Test the value if requested
-        if (testValue && !game.getGameState().equals(expected)) {
+        if (testValue && !getStateBytes(game).equals(expected)) {
             return false;
         }
 
         // Update the game state
-        game.setGameState(newState);
+        game.setGameState(newState.duplicate());
         repaint();
 
         return true;
     }
 
+    /**
+     * Gets the state of a game in its binary form, which is cheaper to make
+     * and compare than {@link Game#getGameState()}.
+     *
+     * @param game the game.
+     * @return the state, ready to be read.
+     */
+    private static ByteBuffer getStateBytes(Game game) {
+        ByteBuffer state = ByteBuffer.allocate(Game.STATE_SIZE);
+        game.getGameState(state);
+        state.flip();
+        return state;
+    }
+
     /**
      * Draws the current checkers game state.
      */
@@ -170,6 +270,7 @@ public class ClickableBoard extends JButton {
 
         // Draw the checkers
         Board board = game.getBoard();
+        int threatened = MoveGenerator.getThreatened(board, game.isP1Turn());
         for (int y = 0; y < 8; y++) {
             int cy = OFFSET_Y + y * BOX_SIZE + BOX_PADDING;
             for (int x = (y + 1) % 2; x < 8; x += 2) {
@@ -240,6 +341,12 @@ public class ClickableBoard extends JButton {
                     g.drawOval(cx - 1, cy - 2, CHECKER_SIZE, CHECKER_SIZE);
                     g.drawOval(cx + 1, cy, CHECKER_SIZE - 4, CHECKER_SIZE - 4);
                 }
+
+                // Warn about the current player's checkers that can be skipped
+                if ((threatened & (1 << Board.toTileIndex(x, y))) != 0) {
+                    g.setColor(Color.RED);
+                    g.drawOval(cx - 2, cy - 3, CHECKER_SIZE + 2, CHECKER_SIZE + 2);
+                }
             }
         }
 
@@ -273,17 +380,34 @@ public class ClickableBoard extends JButton {
     }
 
     public void setBlackPlayer(Player blackPlayer) {
+        Player replaced = this.blackPlayer;
         this.blackPlayer = (blackPlayer == null) ? new HumanPlayer() : blackPlayer;
         if (game.isP1Turn() && !this.blackPlayer.isHuman()) {
             this.clicked = null;
         }
+        shutdownPlayer(replaced);
     }
 
     public void setWhitePlayer(Player whitePlayer) {
+        Player replaced = this.whitePlayer;
         this.whitePlayer = (whitePlayer == null) ? new HumanPlayer() : whitePlayer;
         if (!game.isP1Turn() && !this.whitePlayer.isHuman()) {
             this.clicked = null;
         }
+        shutdownPlayer(replaced);
+    }
+
+    /**
+     * Stops the threads of a player that was replaced. A player that is
+     * still thinking is stopped once its worker is done.
+     *
+     * @param player the player, or null.
+     */
+    private void shutdownPlayer(Player player) {
+        if (player != null && player != blackPlayer && player != whitePlayer
+                && (worker == null || worker.player != player)) {
+            player.shutdown();
+        }
     }
 
     public Player getCurrentPlayer() {
@@ -300,6 +424,11 @@ public class ClickableBoard extends JButton {
      * @param y the y-coordinate of the click on this component.
      */
     private void handleClick(int x, int y) {
+
+        // Only a human player can move by clicking
+        if (!getCurrentPlayer().isHuman()) {
+            return;
+        }
         Game copy = game.copy();
 
         // Determine what square (if any) was clicked
@@ -314,9 +443,13 @@ public class ClickableBoard extends JButton {
         // Determine if a move should be attempted
         if (Board.isValidPoint(sel) && Board.isValidPoint(clicked)) {
             boolean change = copy.isP1Turn();
-            String expected = copy.getGameState();
+            ByteBuffer expected = getStateBytes(copy);
+            int moves = copy.getMoveCount();
             boolean move = copy.makeMove(clicked, sel);
-            boolean updated = (move && setGameState(true, copy.getGameState(), expected));
+            boolean updated = (move && setGameState(true, getStateBytes(copy), expected));
+            if (updated) {
+                logMoves(copy, moves);
+            }
             change = (copy.isP1Turn() != change);
             this.clicked = change ? null : sel;
         } else {
@@ -342,32 +475,65 @@ public class ClickableBoard extends JButton {
      */
     private boolean isValidSelection(Board board, boolean isP1Turn, Point selected) {
 
-        // Trivial cases
-        int i = Board.toTileIndex(selected), id = board.get(i);
-        if (id == Board.EMPTY || id == Board.INVALID) { // no checker here
-            return false;
-        } else if (isP1Turn ^ (id == Board.BLACK_CHECKER || id == Board.BLACK_KING)) { // wrong checker
-            return false;
-        } else if (!MoveGenerator.getSkips(board, i).isEmpty()) { // skip available
-            return true;
-        } else if (MoveGenerator.getMoves(board, i).isEmpty()) { // no moves
+        // Not a tile
+        int i = Board.toTileIndex(selected);
+        if (i < 0) {
             return false;
         }
 
-        // Determine if there is a skip available for another checker
-        List<Point> points = board.find(isP1Turn ? Board.BLACK_CHECKER : Board.WHITE_CHECKER);
-        points.addAll(board.find(isP1Turn ? Board.BLACK_KING : Board.WHITE_KING));
-        for (Point p : points) {
-            int checker = Board.toTileIndex(p);
-            if (checker == i) {
-                continue;
-            }
-            if (!MoveGenerator.getSkips(board, checker).isEmpty()) {
-                return false;
-            }
+        // Skips are mandatory, so only checkers that can skip are allowed if
+        // there are any
+        int checkers = MoveGenerator.getJumpers(board, isP1Turn);
+        if (checkers == 0) {
+            checkers = MoveGenerator.getMovers(board, isP1Turn);
         }
 
-        return true;
+        return (checkers & (1 << i)) != 0;
+    }
+
+    /**
+     * The {@code PlayerWorker} class lets a computer player think on a
+     * background thread, so the user interface stays responsive. The player
+     * updates a copy of the game, which replaces the current game state once
+     * it is done, unless the game was changed in the meantime (e.g. it was
+     * restarted). Then the next player to move, if any, is run.
+     */
+    private class PlayerWorker extends SwingWorker<ByteBuffer, Void> {
+
+        private final Player player;
+        private final Game copy;
+        private final ByteBuffer expected;
+        private final int moves;
+
+        PlayerWorker(Player player) {
+            this.player = player;
+            this.copy = game.copy();
+            this.expected = getStateBytes(game);
+            this.moves = copy.getMoveCount();
+        }
+
+        @Override
+        protected ByteBuffer doInBackground() {
+            player.updateGame(copy);
+            return getStateBytes(copy);
+        }
+
+        @Override
+        protected void done() {
+
+            // The move is dropped if the game was changed in the meantime
+            worker = null;
+            shutdownPlayer(player);
+            try {
+                if (player == getCurrentPlayer()
+                        && setGameState(true, get(), expected)) {
+                    logMoves(copy, moves);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            update();
+        }
     }
 
     /**
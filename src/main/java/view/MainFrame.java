@@ -6,6 +6,7 @@ import javax.swing.JFrame;
 import javax.swing.JPanel;
 
 import controller.AmericanCheckers;
+import model.GameLog;
 import model.Player;
 
 /**
@@ -75,10 +76,22 @@ public class MainFrame extends JFrame {
      */
     public void restart() {
         this.clickableBoard.getGame().restart();
+        this.clickableBoard.logGameState();
         this.clickableBoard.update();
     }
 
     public void setGameState(String state) {
         this.clickableBoard.getGame().setGameState(state);
+        this.clickableBoard.logGameState();
+    }
+
+    /**
+     * Sets the log the game in the window is recorded in, resuming the game
+     * that was being played if there is one.
+     *
+     * @param log the log, or null to stop recording the game.
+     */
+    public void setLog(GameLog log) {
+        this.clickableBoard.setLog(log);
     }
 }